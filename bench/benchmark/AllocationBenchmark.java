@@ -0,0 +1,95 @@
+package benchmark;
+
+import dispatch.DispatchPlan;
+import dispatch.DispatchProblem;
+import dispatch.EmergencyStore;
+import dispatch.GreedyDispatchSolver;
+import dispatch.MinCostFlowDispatchSolver;
+import domain.Ambulances;
+import domain.Emergency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int stations;
+
+    @Param({"100", "1000", "5000"})
+    public int emergencies;
+
+    private DispatchProblem problem;
+    private List<Emergency> open;
+    private List<Ambulances> fleet;
+    private EmergencyStore store;
+    private final GreedyDispatchSolver greedy = new GreedyDispatchSolver();
+    // Generous budget so the benchmark measures the solver itself rather than the fallback.
+    private final MinCostFlowDispatchSolver optimal = new MinCostFlowDispatchSolver(60_000);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+
+        fleet = new ArrayList<>(stations);
+        for (int i = 0; i < stations; i++) {
+            Ambulances station = new Ambulances("County" + (i % 42), "City" + i,
+                    43.6 + random.nextDouble() * 4.6, 20.2 + random.nextDouble() * 9.5, random.nextInt(10));
+            station.setId(i);
+            fleet.add(station);
+        }
+
+        open = new ArrayList<>(emergencies);
+        store = new EmergencyStore(emergencies);
+        for (int i = 0; i < emergencies; i++) {
+            Emergency emergency = new Emergency("City" + i, "County" + (i % 42),
+                    43.6 + random.nextDouble() * 4.6, 20.2 + random.nextDouble() * 9.5, 1 + random.nextInt(3));
+            emergency.setId(i + 1);
+            open.add(emergency);
+            store.add(emergency);
+        }
+
+        problem = new DispatchProblem(open, fleet);
+    }
+
+    @Benchmark
+    public DispatchPlan greedy() {
+        return greedy.solve(problem);
+    }
+
+    @Benchmark
+    public DispatchPlan minCostFlow() {
+        return optimal.solve(problem);
+    }
+
+    // Flattening cost per tick: walking Emergency objects vs copying the store's columns.
+    @Benchmark
+    public DispatchProblem problemFromList() {
+        return new DispatchProblem(open, fleet);
+    }
+
+    @Benchmark
+    public DispatchProblem problemFromStore() {
+        return new DispatchProblem(store, fleet);
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import domain.Dispatch;
+import domain.Location;
+import repository.JdbcUtils;
+import repository.RepositoryDispatch;
+import repository.RepositoryLocation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Throwaway SQLite database for one benchmark trial, created by copying the (empty) schema in
+ * identifier.sqlite to a temp file. Override the schema location with -Dbench.schema=path.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private final Path file;
+    final JdbcUtils jdbcUtils;
+
+    BenchmarkDatabase() throws IOException {
+        Path schema = Paths.get(System.getProperty("bench.schema", "identifier.sqlite"));
+        this.file = Files.createTempFile("distancify-bench-", ".sqlite");
+        Files.copy(schema, file, StandardCopyOption.REPLACE_EXISTING);
+
+        Properties props = new Properties();
+        props.setProperty("jdbc.url", "jdbc:sqlite:" + file.toAbsolutePath());
+        props.setProperty("jdbc.pool.minSize", "1");
+        props.setProperty("jdbc.pool.maxSize", "4");
+        this.jdbcUtils = new JdbcUtils(props);
+    }
+
+    void truncate(String table) throws SQLException {
+        try (Connection conn = jdbcUtils.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM " + table);
+        }
+    }
+
+    void seedDispatches(int rows) {
+        RepositoryDispatch repository = new RepositoryDispatch(jdbcUtils);
+        List<Dispatch> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(dispatch(i));
+            if (batch.size() == 10_000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+    }
+
+    void seedLocations(int rows) {
+        List<Location> locations = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            locations.add(new Location("City" + i, "County" + (i % 42), 43.6 + (i % 97) * 0.05, 20.2 + (i % 89) * 0.1));
+        }
+        new RepositoryLocation(jdbcUtils).saveAll(locations);
+    }
+
+    static Dispatch dispatch(int i) {
+        return new Dispatch("City" + (i % 500), "County" + (i % 42), "City" + ((i * 7) % 500), "County" + ((i * 7) % 42), 1 + i % 5);
+    }
+
+    @Override
+    public void close() throws IOException {
+        JdbcUtils.closeAll();
+        Files.deleteIfExists(file);
+    }
+}
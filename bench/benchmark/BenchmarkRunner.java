@@ -0,0 +1,33 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the suite and writes JMH's JSON results to bench-results/, one timestamped file per run,
+ * so runs can be diffed or fed to a JMH result comparer. An optional argument filters benchmarks
+ * by regex, e.g. "AllocationBenchmark.greedy".
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        File dir = new File("bench-results");
+        dir.mkdirs();
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "benchmark\\..*Benchmark")
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(dir, "jmh-" + stamp + ".json").getPath())
+                .build();
+
+        new Runner(options).run();
+    }
+}
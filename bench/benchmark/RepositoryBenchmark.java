@@ -0,0 +1,141 @@
+package benchmark;
+
+import domain.Dispatch;
+import domain.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import repository.CachingRepositoryLocation;
+import repository.RepositoryDispatch;
+import repository.RepositoryLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Inserts {
+        @Param({"100", "1000"})
+        public int rows;
+
+        BenchmarkDatabase db;
+        RepositoryDispatch repository;
+        List<Dispatch> dispatches;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            db = new BenchmarkDatabase();
+            repository = new RepositoryDispatch(db.jdbcUtils);
+            dispatches = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                dispatches.add(BenchmarkDatabase.dispatch(i));
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void truncate() throws Exception {
+            db.truncate("dispatches");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public void insertSingle(Inserts state) {
+        for (Dispatch dispatch : state.dispatches) {
+            state.repository.save(dispatch);
+        }
+    }
+
+    @Benchmark
+    public void insertBatched(Inserts state) {
+        state.repository.saveAll(state.dispatches);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        @Param({"10000", "100000", "1000000"})
+        public int rows;
+
+        BenchmarkDatabase db;
+        RepositoryDispatch repository;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            db = new BenchmarkDatabase();
+            db.seedDispatches(rows);
+            repository = new RepositoryDispatch(db.jdbcUtils);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Dispatch> findAll(Table state) {
+        return state.repository.findAll();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamAll(Table state, Blackhole blackhole) {
+        state.repository.forEach(blackhole::consume);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Locations {
+        static final int COUNT = 1000;
+
+        BenchmarkDatabase db;
+        RepositoryLocation uncached;
+        CachingRepositoryLocation cached;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            db = new BenchmarkDatabase();
+            db.seedLocations(COUNT);
+            uncached = new RepositoryLocation(db.jdbcUtils);
+            cached = new CachingRepositoryLocation(new RepositoryLocation(db.jdbcUtils));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public Location findByIdUncached(Locations state) {
+        return state.uncached.findById("City" + ThreadLocalRandom.current().nextInt(Locations.COUNT)).orElse(null);
+    }
+
+    @Benchmark
+    public Location findByIdCached(Locations state) {
+        return state.cached.findById("City" + ThreadLocalRandom.current().nextInt(Locations.COUNT)).orElse(null);
+    }
+}
@@ -0,0 +1,124 @@
+package loadgen;
+
+import metrics.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop replay of a LoadScenario: each request is sent at its scheduled time whether or not
+ * earlier ones have answered, and its latency is measured from that scheduled time, so a stalled
+ * backend shows up as queueing delay instead of silently slowing the generator down.
+ * A speed of 1 keeps the recorded spacing, N compresses it N times and max sends back to back.
+ */
+public class LoadGenerator {
+
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final HttpClient client;
+    private final URI baseUri;
+    private final double speed;
+    private final int maxInFlight;
+    private final Duration timeout;
+
+    public LoadGenerator(URI baseUri, double speed, int maxInFlight, Duration timeout) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.baseUri = baseUri;
+        this.speed = speed;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+    }
+
+    public Report run(LoadScenario scenario) throws InterruptedException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long dropped = 0;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        CountDownLatch done = new CountDownLatch(scenario.size());
+        boolean max = speed == MAX_SPEED;
+
+        long start = System.nanoTime();
+        for (LoadScenario.Request request : scenario.requests()) {
+            long scheduled;
+            if (max) {
+                // No schedule to fall behind at max speed, so the in-flight cap applies backpressure.
+                inFlight.acquire();
+                scheduled = System.nanoTime();
+            } else {
+                scheduled = start + (long) (request.offsetNanos() / speed);
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                // Blocking here would turn the run into a closed loop; count the miss instead.
+                if (!inFlight.tryAcquire()) {
+                    dropped++;
+                    done.countDown();
+                    continue;
+                }
+            }
+
+            client.sendAsync(toHttp(request), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies.record(System.nanoTime() - scheduled);
+                        if (error == null && response.statusCode() < 400) {
+                            succeeded.increment();
+                        } else {
+                            failed.increment();
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        return new Report(scenario.size(), succeeded.sum(), failed.sum(), dropped, elapsed,
+                latencies.percentile(50), latencies.percentile(90), latencies.percentile(99),
+                latencies.percentile(99.9), latencies.getMax());
+    }
+
+    private HttpRequest toHttp(LoadScenario.Request request) {
+        String payload = request.payload();
+        HttpRequest.BodyPublisher body = payload == null || payload.isEmpty()
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(payload);
+        return HttpRequest.newBuilder(baseUri.resolve(request.endpoint()))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .method(request.method() == null ? "GET" : request.method(), body)
+                .build();
+    }
+
+    public record Report(int scheduled, long succeeded, long failed, long dropped, long elapsedNanos,
+                         long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : (succeeded + failed) * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d ok=%d failed=%d dropped=%d elapsed=%.2fs throughput=%.1f req/s "
+                            + "p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                    scheduled, succeeded, failed, dropped, elapsedNanos / 1e9, throughput(),
+                    millis(p50Nanos), millis(p90Nanos), millis(p99Nanos), millis(p999Nanos), millis(maxNanos));
+        }
+
+        private static double millis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package loadgen;
+
+import repository.JdbcUtils;
+import repository.RepositoryApiRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Usage: LoadGeneratorRunner baseUrl speed scenario
+ *   speed    - "1x", "10x", ... or "max"
+ *   scenario - "synthetic[:count[,ratePerSecond]]", or "recorded:jdbc.properties[,from[,to]]"
+ *              with from/to as "yyyy-mm-dd hh:mm:ss" timestamps
+ * In-flight requests are capped by -Dloadgen.maxInFlight (default 256).
+ */
+public class LoadGeneratorRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: LoadGeneratorRunner baseUrl 1x|Nx|max synthetic[:count[,rate]]|recorded:props[,from[,to]]");
+            System.exit(2);
+        }
+
+        URI baseUri = URI.create(args[0]);
+        double speed = args[1].equalsIgnoreCase("max")
+                ? LoadGenerator.MAX_SPEED
+                : Double.parseDouble(args[1].replaceFirst("[xX]$", ""));
+        LoadScenario scenario = scenario(args[2]);
+        int maxInFlight = Integer.getInteger("loadgen.maxInFlight", 256);
+
+        System.out.printf("Replaying %d requests (%.1fs recorded) against %s at %s%n",
+                scenario.size(), scenario.durationNanos() / 1e9, baseUri, args[1]);
+        LoadGenerator generator = new LoadGenerator(baseUri, speed, maxInFlight, Duration.ofSeconds(30));
+        System.out.println(generator.run(scenario));
+    }
+
+    private static LoadScenario scenario(String spec) throws IOException {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String[] parts = colon < 0 ? new String[0] : spec.substring(colon + 1).split(",");
+        if (kind.equals("synthetic")) {
+            int count = parts.length > 0 ? Integer.parseInt(parts[0]) : 10_000;
+            double rate = parts.length > 1 ? Double.parseDouble(parts[1]) : 100;
+            return LoadScenario.synthetic(count, rate, 42);
+        }
+        if (kind.equals("recorded") && parts.length > 0) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(Paths.get(parts[0]))) {
+                props.load(in);
+            }
+            Timestamp from = parts.length > 1 ? Timestamp.valueOf(parts[1]) : new Timestamp(0);
+            Timestamp to = parts.length > 2 ? Timestamp.valueOf(parts[2]) : new Timestamp(Long.MAX_VALUE);
+            try {
+                return LoadScenario.recorded(new RepositoryApiRequest(new JdbcUtils(props)), from, to);
+            } finally {
+                JdbcUtils.closeAll();
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario: " + spec);
+    }
+}
@@ -0,0 +1,85 @@
+package loadgen;
+
+import domain.ApiRequest;
+import repository.RepositoryApiRequest;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An ordered list of requests, each with its send offset from the start of the run. Built either
+ * from recorded api_requests rows, keeping their original spacing, or synthetically.
+ */
+public final class LoadScenario {
+
+    private static final int PAGE_SIZE = 1000;
+
+    public record Request(long offsetNanos, String method, String endpoint, String payload) {}
+
+    private final List<Request> requests;
+
+    private LoadScenario(List<Request> requests) {
+        this.requests = Collections.unmodifiableList(requests);
+    }
+
+    public static LoadScenario recorded(RepositoryApiRequest repository, Timestamp from, Timestamp to) {
+        List<ApiRequest> rows = new ArrayList<>();
+        Timestamp afterTimestamp = from;
+        int afterId = 0;
+        List<ApiRequest> page;
+        do {
+            page = repository.findBetween(from, to, afterTimestamp, afterId, PAGE_SIZE);
+            rows.addAll(page);
+            if (!page.isEmpty()) {
+                ApiRequest last = page.get(page.size() - 1);
+                afterTimestamp = last.getTimestamp();
+                afterId = last.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        List<Request> requests = new ArrayList<>(rows.size());
+        long first = rows.isEmpty() ? 0 : rows.get(0).getTimestamp().getTime();
+        for (ApiRequest row : rows) {
+            long offset = TimeUnit.MILLISECONDS.toNanos(row.getTimestamp().getTime() - first);
+            requests.add(new Request(offset, row.getMethod(), row.getEndpoint(), row.getPayload()));
+        }
+        return new LoadScenario(requests);
+    }
+
+    /**
+     * Emergency reports arriving as a Poisson process at ratePerSecond, scattered over the same
+     * area the benchmark fixtures use. The seed makes runs repeatable.
+     */
+    public static LoadScenario synthetic(int count, double ratePerSecond, long seed) {
+        Random random = new Random(seed);
+        List<Request> requests = new ArrayList<>(count);
+        double offsetSeconds = 0;
+        for (int i = 0; i < count; i++) {
+            offsetSeconds += -Math.log(1 - random.nextDouble()) / ratePerSecond;
+            int city = random.nextInt(500);
+            String payload = String.format(Locale.ROOT,
+                    "{\"city\":\"City%d\",\"county\":\"County%d\",\"latitude\":%.5f,\"longitude\":%.5f,\"quantity\":%d}",
+                    city, city % 42, 43.6 + random.nextDouble() * 4.8, 20.2 + random.nextDouble() * 8.9,
+                    1 + random.nextInt(5));
+            requests.add(new Request((long) (offsetSeconds * 1e9), "POST", "/emergencies", payload));
+        }
+        return new LoadScenario(requests);
+    }
+
+    public List<Request> requests() {
+        return requests;
+    }
+
+    public int size() {
+        return requests.size();
+    }
+
+    public long durationNanos() {
+        return requests.isEmpty() ? 0 : requests.get(requests.size() - 1).offsetNanos();
+    }
+}
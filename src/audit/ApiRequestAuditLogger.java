@@ -0,0 +1,251 @@
+package audit;
+
+import domain.ApiRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryApiRequest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind recorder for API requests. Callers enqueue and return immediately; a single
+ * background writer group-commits queued requests through RepositoryApiRequest.saveAll once
+ * batchSize requests are waiting or flushIntervalMillis has passed.
+ */
+public class ApiRequestAuditLogger implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final RepositoryApiRequest repository;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+
+    // ConcurrentLinkedQueue is lock-free but unbounded; the CAS-reserved size keeps it bounded.
+    private final ConcurrentLinkedQueue<ApiRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public ApiRequestAuditLogger(RepositoryApiRequest repository, int capacity, int batchSize,
+                                 long flushIntervalMillis, OverflowPolicy overflowPolicy, Path spillFile) {
+        if (overflowPolicy == OverflowPolicy.SPILL && spillFile == null) {
+            throw new IllegalArgumentException("SPILL overflow policy requires a spill file");
+        }
+        this.repository = repository;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+
+        replaySpill();
+
+        this.writer = new Thread(this::runWriter, "api-request-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public boolean record(ApiRequest request) {
+        if (request.getTimestamp() == null) {
+            request.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        }
+        if (!running) {
+            logger.warn("Audit logger is closed, dropping API request: {}", request);
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        while (!tryReserve()) {
+            switch (overflowPolicy) {
+                case DROP:
+                    dropped.incrementAndGet();
+                    return false;
+                case SPILL:
+                    return spill(List.of(request));
+                case BLOCK:
+                default:
+                    LockSupport.unpark(writer);
+                    LockSupport.parkNanos(50_000);
+                    if (!running) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+            }
+        }
+
+        queue.offer(request);
+        enqueued.incrementAndGet();
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private boolean tryReserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void runWriter() {
+        List<ApiRequest> batch = new ArrayList<>(batchSize);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+
+        while (running || !queue.isEmpty()) {
+            long now = System.nanoTime();
+            if (size.get() >= batchSize || now >= deadline || !running) {
+                drainTo(batch);
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+                deadline = System.nanoTime() + flushIntervalNanos;
+            } else {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+        }
+    }
+
+    private void drainTo(List<ApiRequest> batch) {
+        ApiRequest request;
+        while (batch.size() < batchSize && (request = queue.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(request);
+        }
+    }
+
+    private void write(List<ApiRequest> batch) {
+        try {
+            repository.saveAll(batch);
+            written.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            logger.error("Error writing {} audited API requests", batch.size(), e);
+            if (spillFile == null || !spill(batch)) {
+                failed.addAndGet(batch.size());
+            }
+        }
+        batch.clear();
+    }
+
+    private synchronized boolean spill(List<ApiRequest> requests) {
+        try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ApiRequest request : requests) {
+                out.write(encode(request));
+                out.newLine();
+            }
+            spilled.addAndGet(requests.size());
+            return true;
+        } catch (IOException e) {
+            logger.error("Error spilling {} API requests to {}", requests.size(), spillFile, e);
+            dropped.addAndGet(requests.size());
+            return false;
+        }
+    }
+
+    private void replaySpill() {
+        if (spillFile == null || !Files.exists(spillFile)) {
+            return;
+        }
+        try {
+            List<ApiRequest> requests = new ArrayList<>();
+            for (String line : Files.readAllLines(spillFile, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    requests.add(decode(line));
+                }
+            }
+            repository.saveAll(requests);
+            Files.delete(spillFile);
+            logger.info("Replayed {} spilled API requests from {}", requests.size(), spillFile);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error replaying spilled API requests from {}", spillFile, e);
+        }
+    }
+
+    private static String encode(ApiRequest request) {
+        return String.join("\t",
+                field(request.getEndpoint()),
+                field(request.getMethod()),
+                field(request.getPayload()),
+                field(request.getTimestamp() == null ? null : Long.toString(request.getTimestamp().getTime())),
+                field(request.getStatus()),
+                field(request.getResponse()));
+    }
+
+    private static ApiRequest decode(String line) {
+        String[] fields = line.split("\t", -1);
+        String millis = value(fields[3]);
+        ApiRequest request = new ApiRequest();
+        request.setEndpoint(value(fields[0]));
+        request.setMethod(value(fields[1]));
+        request.setPayload(value(fields[2]));
+        request.setTimestamp(millis == null ? null : new Timestamp(Long.parseLong(millis)));
+        request.setStatus(value(fields[4]));
+        request.setResponse(value(fields[5]));
+        return request;
+    }
+
+    private static String field(String value) {
+        return value == null ? "-" : Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String value(String field) {
+        return field.equals("-") ? null : new String(Base64.getDecoder().decode(field), StandardCharsets.UTF_8);
+    }
+
+    // Stops accepting requests and blocks until everything already queued has been written.
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while flushing audit queue, {} requests pending", size.get());
+            return;
+        }
+
+        // Producers that passed the running check just before close() may still have enqueued.
+        List<ApiRequest> batch = new ArrayList<>(batchSize);
+        drainTo(batch);
+        while (!batch.isEmpty()) {
+            write(batch);
+            drainTo(batch);
+        }
+    }
+
+    public int getQueueSize() { return size.get(); }
+    public long getEnqueued() { return enqueued.get(); }
+    public long getWritten() { return written.get(); }
+    public long getDropped() { return dropped.get(); }
+    public long getSpilled() { return spilled.get(); }
+    public long getFailed() { return failed.get(); }
+}
@@ -0,0 +1,10 @@
+package audit;
+
+public enum OverflowPolicy {
+    // Wait for the writer to free space; the caller absorbs the back-pressure.
+    BLOCK,
+    // Discard the record and count it.
+    DROP,
+    // Append the record to the local spill file; it is replayed on the next start.
+    SPILL
+}
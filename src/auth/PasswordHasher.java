@@ -0,0 +1,69 @@
+package auth;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 password hashes stored as "pbkdf2$iterations$salt$hash" (Base64). Verifying
+ * is deliberately slow, which is why SessionStore does it once per login rather than per request.
+ */
+public final class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2";
+    private static final int ITERATIONS = 210_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom random = new SecureRandom();
+
+    private PasswordHasher() {}
+
+    public static String hash(char[] password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password, salt, ITERATIONS, HASH_BITS);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + "$" + ITERATIONS + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    // Whether the value is already a hash in this format rather than a plaintext password.
+    public static boolean isHash(String value) {
+        if (value == null) {
+            return false;
+        }
+        String[] parts = value.split("\\$");
+        return parts.length == 4 && parts[0].equals(PREFIX);
+    }
+
+    // False for a wrong password and for a stored value that is not in this format.
+    public static boolean verify(char[] password, String stored) {
+        if (!isHash(stored)) {
+            return false;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            byte[] actual = derive(password, salt, iterations, expected.length * 8);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to derive password hash: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
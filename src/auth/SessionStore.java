@@ -0,0 +1,185 @@
+package auth;
+
+import domain.Login;
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.LoginListener;
+import repository.RepositoryLogin;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Operator sessions. A login is verified once against the login table and exchanges the password
+ * for an opaque random token; after that every request is checked against this in-memory store
+ * and never reaches the database or the password hash.
+ *
+ * Sessions expire ttlMillis after they were issued. The store holds at most maxSessions: tokens
+ * are queued in issue order, which is also expiry order, so expired and surplus sessions are
+ * dropped from the head of the queue as new ones are issued.
+ *
+ * Changing or deleting a login bumps that operator's generation; sessions issued under an older
+ * generation are rejected, including one whose login raced the change.
+ */
+public class SessionStore implements LoginListener {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int TOKEN_BYTES = 32;
+
+    private final RepositoryLogin repository;
+    private final int maxSessions;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    // Verified against for unknown names so they take as long to reject as a wrong password.
+    private final String unknownLoginHash = PasswordHasher.hash(new char[0]);
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Queue<Session> issueOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder failedLogins = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public SessionStore(RepositoryLogin repository, int maxSessions, long ttlMillis) {
+        this.repository = repository;
+        this.maxSessions = maxSessions;
+        this.ttlMillis = ttlMillis;
+        repository.addListener(this);
+
+        MetricsRegistry.gauge("auth_sessions", size::get);
+        MetricsRegistry.gauge("auth_logins_total", logins::sum);
+        MetricsRegistry.gauge("auth_failed_logins_total", failedLogins::sum);
+        MetricsRegistry.gauge("auth_sessions_evicted_total", evicted::sum);
+    }
+
+    // Returns a new session token, or empty when the name is unknown or the password is wrong.
+    public Optional<String> login(String name, char[] password) {
+        long generation = generation(name);
+        return issue(name, password, generation, repository.findById(name));
+    }
+
+    /**
+     * As login(name, password), with the login table lookup run through the given gate, so a caller
+     * that rations database access holds its permit for the query only and not for the hash check.
+     */
+    public Optional<String> login(String name, char[] password, LookupGate gate) throws InterruptedException {
+        long generation = generation(name);
+        return issue(name, password, generation, gate.run(() -> repository.findById(name)));
+    }
+
+    private Optional<String> issue(String name, char[] password, long generation, Optional<Login> login) {
+        String stored = login.map(Login::getPasswordHash).orElse(unknownLoginHash);
+        if (!PasswordHasher.verify(password, stored) || login.isEmpty()) {
+            failedLogins.increment();
+            logger.info("Rejected login for {}", name);
+            return Optional.empty();
+        }
+
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(token, name, generation, System.currentTimeMillis() + ttlMillis);
+
+        sessions.put(token, session);
+        issueOrder.add(session);
+        size.incrementAndGet();
+        logins.increment();
+        trim();
+        return Optional.of(token);
+    }
+
+    // Returns the operator name for a live token.
+    public Optional<String> authenticate(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return Optional.empty();
+        }
+        if (session.expiresAtMillis <= System.currentTimeMillis() || session.generation != generation(session.name)) {
+            remove(session);
+            return Optional.empty();
+        }
+        return Optional.of(session.name);
+    }
+
+    public void logout(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session != null) {
+            remove(session);
+        }
+    }
+
+    @Override
+    public void onCredentialsChanged(String name) {
+        generations.merge(name, 1L, Long::sum);
+        logger.debug("Invalidated sessions for {}", name);
+    }
+
+    private long generation(String name) {
+        return generations.getOrDefault(name, 0L);
+    }
+
+    // Drops expired sessions and, beyond maxSessions, the oldest ones.
+    private void trim() {
+        long now = System.currentTimeMillis();
+        Session head;
+        while ((head = issueOrder.peek()) != null) {
+            if (head.removed) {
+                issueOrder.remove(head);
+            } else if (head.expiresAtMillis <= now || size.get() > maxSessions) {
+                if (issueOrder.remove(head) && remove(head) && head.expiresAtMillis > now) {
+                    evicted.increment();
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private boolean remove(Session session) {
+        if (!sessions.remove(session.token, session)) {
+            return false;
+        }
+        session.removed = true;
+        size.decrementAndGet();
+        return true;
+    }
+
+    public int size() { return size.get(); }
+    public long getLogins() { return logins.sum(); }
+    public long getFailedLogins() { return failedLogins.sum(); }
+    public long getEvicted() { return evicted.sum(); }
+
+    @FunctionalInterface
+    public interface LookupGate {
+        Optional<Login> run(Supplier<Optional<Login>> lookup) throws InterruptedException;
+    }
+
+    private static final class Session {
+        private final String token;
+        private final String name;
+        private final long generation;
+        private final long expiresAtMillis;
+        private volatile boolean removed;
+
+        private Session(String token, String name, long generation, long expiresAtMillis) {
+            this.token = token;
+            this.name = name;
+            this.generation = generation;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
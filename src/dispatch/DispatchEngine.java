@@ -0,0 +1,99 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Dispatch;
+import domain.Emergency;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryDispatch;
+
+import java.util.List;
+
+public class DispatchEngine {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final long DEFAULT_OPTIMAL_BUDGET_MILLIS = 200;
+
+    private final RepositoryDispatch repositoryDispatch;
+    private final DispatchSolver greedy;
+    private final DispatchSolver optimal;
+    private final DispatchStats stats = new DispatchStats();
+    private final ErrorCounters errorCounters;
+
+    public DispatchEngine(RepositoryDispatch repositoryDispatch) {
+        this(repositoryDispatch, new GreedyDispatchSolver(), new MinCostFlowDispatchSolver(DEFAULT_OPTIMAL_BUDGET_MILLIS));
+    }
+
+    public DispatchEngine(RepositoryDispatch repositoryDispatch, DispatchSolver greedy, DispatchSolver optimal) {
+        this(repositoryDispatch, greedy, optimal, null);
+    }
+
+    public DispatchEngine(RepositoryDispatch repositoryDispatch, DispatchSolver greedy, DispatchSolver optimal,
+                          ErrorCounters errorCounters) {
+        this.repositoryDispatch = repositoryDispatch;
+        this.greedy = greedy;
+        this.optimal = optimal;
+        this.errorCounters = errorCounters;
+    }
+
+    public DispatchPlan plan(List<Emergency> emergencies, List<Ambulances> stations, DispatchMode mode) {
+        return solve(new DispatchProblem(emergencies, stations), mode);
+    }
+
+    // Plans over the live slots of a columnar store; no Emergency objects are touched.
+    public DispatchPlan plan(EmergencyStore emergencies, List<Ambulances> stations, DispatchMode mode) {
+        return solve(new DispatchProblem(emergencies, stations), mode);
+    }
+
+    private DispatchPlan solve(DispatchProblem problem, DispatchMode mode) {
+        if (mode == DispatchMode.GREEDY) {
+            DispatchPlan plan = greedy.solve(problem);
+            stats.record(mode, plan);
+            return plan;
+        }
+
+        DispatchPlan plan = optimal.solve(problem);
+        stats.record(mode, plan);
+        if (!plan.isFallback()) {
+            stats.recordComparison(greedy.solve(problem), plan);
+        }
+        return plan;
+    }
+
+    public DispatchPlan dispatch(List<Emergency> emergencies, List<Ambulances> stations) {
+        return dispatch(emergencies, stations, DispatchMode.GREEDY);
+    }
+
+    // Solves one tick with the chosen mode and records every resulting allocation in a single batch.
+    public DispatchPlan dispatch(List<Emergency> emergencies, List<Ambulances> stations, DispatchMode mode) {
+        logger.traceEntry("Dispatching ({}) for {} emergencies from {} stations", mode, emergencies.size(), stations.size());
+        return record(plan(emergencies, stations, mode));
+    }
+
+    public DispatchPlan dispatch(EmergencyStore emergencies, List<Ambulances> stations, DispatchMode mode) {
+        logger.traceEntry("Dispatching ({}) for {} stored emergencies from {} stations", mode, emergencies.size(), stations.size());
+        return record(plan(emergencies, stations, mode));
+    }
+
+    private DispatchPlan record(DispatchPlan plan) {
+        List<Dispatch> dispatches = plan.toDispatches();
+        repositoryDispatch.saveAll(dispatches);
+        if (errorCounters != null) {
+            errorCounters.record(plan);
+        }
+
+        logger.trace("Dispatched {} units in {} allocations, {} units of demand unmet ({} us{})",
+                plan.getDispatchedUnits(), dispatches.size(), plan.getTotalUnmetDemand(), plan.getSolveNanos() / 1000,
+                plan.isFallback() ? ", fell back to greedy" : "");
+        logger.traceExit("Exiting dispatch()");
+        return plan;
+    }
+
+    public DispatchStats getStats() {
+        return stats;
+    }
+
+    public ErrorCounters getErrorCounters() {
+        return errorCounters;
+    }
+}
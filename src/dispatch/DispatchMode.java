@@ -0,0 +1,6 @@
+package dispatch;
+
+public enum DispatchMode {
+    GREEDY,
+    OPTIMAL
+}
@@ -0,0 +1,100 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output of a solver: allocations as parallel (emergency, station, quantity) arrays indexed
+ * into the DispatchProblem, plus what is left over on either side.
+ */
+public class DispatchPlan {
+
+    private final DispatchProblem problem;
+    private int[] emergencyIdx = new int[16];
+    private int[] stationIdx = new int[16];
+    private int[] quantity = new int[16];
+    private int size;
+    private double totalDistanceKm;
+
+    private final int[] residualSupply;
+    private final int[] unmetDemand;
+    private long solveNanos;
+    private boolean fallback;
+
+    DispatchPlan(DispatchProblem problem) {
+        this.problem = problem;
+        this.residualSupply = problem.supply.clone();
+        this.unmetDemand = problem.demands();
+    }
+
+    void add(int emergency, int station, int units, double distanceKm) {
+        if (size == quantity.length) {
+            int capacity = size * 2;
+            emergencyIdx = Arrays.copyOf(emergencyIdx, capacity);
+            stationIdx = Arrays.copyOf(stationIdx, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+        }
+        emergencyIdx[size] = emergency;
+        stationIdx[size] = station;
+        quantity[size] = units;
+        size++;
+        residualSupply[station] -= units;
+        unmetDemand[emergency] -= units;
+        totalDistanceKm += units * distanceKm;
+    }
+
+    void setSolveNanos(long solveNanos) {
+        this.solveNanos = solveNanos;
+    }
+
+    void markFallback() {
+        this.fallback = true;
+    }
+
+    public List<Dispatch> toDispatches() {
+        List<Dispatch> dispatches = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Ambulances station = problem.stations.get(stationIdx[i]);
+            dispatches.add(Dispatch.fromIds(
+                    station.getCityId(),
+                    station.getCountyId(),
+                    problem.emergencyCityId(emergencyIdx[i]),
+                    problem.emergencyCountyId(emergencyIdx[i]),
+                    quantity[i]
+            ));
+        }
+        return dispatches;
+    }
+
+    public DispatchProblem getProblem() { return problem; }
+    public int size() { return size; }
+    public int getEmergencyIndex(int i) { return emergencyIdx[i]; }
+    public int getStationIndex(int i) { return stationIdx[i]; }
+    public int getQuantity(int i) { return quantity[i]; }
+    public int getResidualSupply(int station) { return residualSupply[station]; }
+    public int getUnmetDemand(int emergency) { return unmetDemand[emergency]; }
+    public double getTotalDistanceKm() { return totalDistanceKm; }
+    public long getSolveNanos() { return solveNanos; }
+    // True when the requested solver ran out of time budget and the plan came from its fallback.
+    public boolean isFallback() { return fallback; }
+
+    public int getDispatchedUnits() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += quantity[i];
+        }
+        return total;
+    }
+
+    public int getTotalUnmetDemand() {
+        int total = 0;
+        for (int d : unmetDemand) {
+            total += d;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,140 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Emergency;
+
+import java.util.List;
+
+/**
+ * Flattened view of one dispatch tick: emergencies and stations as primitive columns so solvers
+ * can run without touching the domain objects. Emergencies from a list are copied into arrays;
+ * emergencies from an EmergencyStore are read in place from its columns, in arrival order, so a
+ * tick over the store copies nothing. Solvers go through the emergency accessors either way.
+ */
+public class DispatchProblem {
+
+    final List<Emergency> emergencies;
+    // Set instead of emergencies when built from a store; emergencySlots maps index to store slot.
+    final EmergencyStore store;
+    final int[] emergencySlots;
+    final List<Ambulances> stations;
+
+    // Only when built from a list.
+    private final double[] emergencyLat;
+    private final double[] emergencyLon;
+    private final int[] demand;
+    private final int emergencyCount;
+
+    final double[] stationLat;
+    final double[] stationLon;
+    final int[] supply;
+
+    public DispatchProblem(List<Emergency> emergencies, List<Ambulances> stations) {
+        this.emergencies = emergencies;
+        this.store = null;
+        this.emergencySlots = null;
+        this.stations = stations;
+
+        int e = emergencies.size();
+        this.emergencyCount = e;
+        this.emergencyLat = new double[e];
+        this.emergencyLon = new double[e];
+        this.demand = new int[e];
+        for (int i = 0; i < e; i++) {
+            Emergency emergency = emergencies.get(i);
+            emergencyLat[i] = emergency.getLatitude();
+            emergencyLon[i] = emergency.getLongitude();
+            demand[i] = Math.max(0, emergency.getQuantity());
+        }
+
+        int s = stations.size();
+        this.stationLat = new double[s];
+        this.stationLon = new double[s];
+        this.supply = new int[s];
+        fillStations();
+    }
+
+    public DispatchProblem(EmergencyStore store, List<Ambulances> stations) {
+        this.emergencies = null;
+        this.store = store;
+        this.stations = stations;
+
+        // Arrival order is what the greedy solver relies on; the store keeps it, so no sort.
+        // The problem must be solved before the store changes again.
+        this.emergencySlots = store.arrivalOrder();
+        this.emergencyCount = store.size();
+        this.emergencyLat = null;
+        this.emergencyLon = null;
+        this.demand = null;
+
+        int s = stations.size();
+        this.stationLat = new double[s];
+        this.stationLon = new double[s];
+        this.supply = new int[s];
+        fillStations();
+    }
+
+    private void fillStations() {
+        for (int j = 0; j < supply.length; j++) {
+            Ambulances station = stations.get(j);
+            stationLat[j] = station.getLatitude();
+            stationLon[j] = station.getLongitude();
+            supply[j] = Math.max(0, station.getQuantity());
+        }
+    }
+
+    double emergencyLat(int e) {
+        return store != null ? store.getLatitude(emergencySlots[e]) : emergencyLat[e];
+    }
+
+    double emergencyLon(int e) {
+        return store != null ? store.getLongitude(emergencySlots[e]) : emergencyLon[e];
+    }
+
+    int demand(int e) {
+        return store != null ? Math.max(0, store.getQuantity(emergencySlots[e])) : demand[e];
+    }
+
+    // A fresh copy of every emergency's demand, for solvers to count down.
+    int[] demands() {
+        if (store == null) {
+            return demand.clone();
+        }
+        int[] copy = new int[emergencyCount];
+        for (int e = 0; e < emergencyCount; e++) {
+            copy[e] = demand(e);
+        }
+        return copy;
+    }
+
+    int emergencyCityId(int e) {
+        return store != null ? store.getCityId(emergencySlots[e]) : emergencies.get(e).getCityId();
+    }
+
+    int emergencyCountyId(int e) {
+        return store != null ? store.getCountyId(emergencySlots[e]) : emergencies.get(e).getCountyId();
+    }
+
+    public int emergencyId(int e) {
+        return store != null ? store.getId(emergencySlots[e]) : emergencies.get(e).getId();
+    }
+
+    public int emergencyCount() { return emergencyCount; }
+    public int stationCount() { return supply.length; }
+
+    public int totalDemand() {
+        int total = 0;
+        for (int e = 0; e < emergencyCount; e++) {
+            total += demand(e);
+        }
+        return total;
+    }
+
+    public int totalSupply() {
+        int total = 0;
+        for (int s : supply) {
+            total += s;
+        }
+        return total;
+    }
+}
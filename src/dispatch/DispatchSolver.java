@@ -0,0 +1,6 @@
+package dispatch;
+
+public interface DispatchSolver {
+
+    DispatchPlan solve(DispatchProblem problem);
+}
@@ -0,0 +1,63 @@
+package dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running solve-time and quality figures per mode. Every OPTIMAL tick is also solved greedily,
+ * and the differences (greedy minus optimal) are accumulated so the CPU cost of optimality can be
+ * weighed against the unmet demand and distance it saves.
+ */
+public class DispatchStats {
+
+    private final LongAdder[] ticks = adders();
+    private final LongAdder[] solveNanos = adders();
+    private final AtomicLong[] maxSolveNanos = {new AtomicLong(), new AtomicLong()};
+    private final LongAdder fallbacks = new LongAdder();
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder unmetDemandSaved = new LongAdder();
+    private final DoubleAdder distanceSavedKm = new DoubleAdder();
+
+    private static LongAdder[] adders() {
+        return new LongAdder[]{new LongAdder(), new LongAdder()};
+    }
+
+    void record(DispatchMode mode, DispatchPlan plan) {
+        int i = mode.ordinal();
+        ticks[i].increment();
+        solveNanos[i].add(plan.getSolveNanos());
+        maxSolveNanos[i].accumulateAndGet(plan.getSolveNanos(), Math::max);
+        if (plan.isFallback()) {
+            fallbacks.increment();
+        }
+    }
+
+    void recordComparison(DispatchPlan greedy, DispatchPlan optimal) {
+        comparisons.increment();
+        unmetDemandSaved.add(greedy.getTotalUnmetDemand() - optimal.getTotalUnmetDemand());
+        distanceSavedKm.add(greedy.getTotalDistanceKm() - optimal.getTotalDistanceKm());
+    }
+
+    public long getTicks(DispatchMode mode) { return ticks[mode.ordinal()].sum(); }
+    public long getMaxSolveNanos(DispatchMode mode) { return maxSolveNanos[mode.ordinal()].get(); }
+    public long getFallbacks() { return fallbacks.sum(); }
+    public long getComparisons() { return comparisons.sum(); }
+    public long getUnmetDemandSaved() { return unmetDemandSaved.sum(); }
+    public double getDistanceSavedKm() { return distanceSavedKm.sum(); }
+
+    public double getAverageSolveMillis(DispatchMode mode) {
+        long n = getTicks(mode);
+        return n == 0 ? 0 : solveNanos[mode.ordinal()].sum() / 1_000_000.0 / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("greedy: %d ticks, avg %.3f ms; optimal: %d ticks, avg %.3f ms, %d fallbacks; "
+                        + "optimal saved %d units of unmet demand and %.1f km over %d ticks",
+                getTicks(DispatchMode.GREEDY), getAverageSolveMillis(DispatchMode.GREEDY),
+                getTicks(DispatchMode.OPTIMAL), getAverageSolveMillis(DispatchMode.OPTIMAL), getFallbacks(),
+                getUnmetDemandSaved(), getDistanceSavedKm(), getComparisons());
+    }
+}
@@ -0,0 +1,186 @@
+package dispatch;
+
+import domain.Emergency;
+import domain.NameDictionary;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryEmergency;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Open emergencies kept column-wise in parallel primitive arrays indexed by slot, so the dispatch
+ * loop scans doubles and ints instead of chasing Emergency objects. City and county are stored as
+ * NameDictionary ids. Removed slots go on a free list and are reused by the next add, so the columns
+ * only grow to the peak number of open cases.
+ *
+ * Scans walk slots [0, capacity()) and skip those where isLive is false, or walk arrivalOrder() for
+ * live slots in the order their emergencies were added. Not thread-safe: the owner serialises
+ * access, as with IncrementalDispatcher's state.
+ */
+public class EmergencyStore {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int NO_SLOT = -1;
+
+    // ids[slot] == 0 marks a free slot; persisted emergencies always have a positive id.
+    private int[] ids;
+    private double[] latitude;
+    private double[] longitude;
+    private int[] quantity;
+    private int[] city;
+    private int[] county;
+    // Free-list links: nextFree[slot] is the next free slot after this one.
+    private int[] nextFree;
+    // Live slots in the order they were added; removed ones leave NO_SLOT until the next compaction.
+    private int[] order;
+    private int[] orderPosition;
+    private int orderSize;
+    private int freeHead = NO_SLOT;
+    private int highWater;
+    private int size;
+
+    private final Map<Integer, Integer> slots = new HashMap<>();
+
+    public EmergencyStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        ids = new int[capacity];
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        quantity = new int[capacity];
+        city = new int[capacity];
+        county = new int[capacity];
+        nextFree = new int[capacity];
+        order = new int[capacity];
+        orderPosition = new int[capacity];
+    }
+
+    public static EmergencyStore load(RepositoryEmergency repository) {
+        List<Emergency> open = repository.findOpen();
+        EmergencyStore store = new EmergencyStore(open.size() * 2);
+        open.forEach(store::add);
+        logger.info("Loaded {} open emergencies into the columnar store", store.size());
+        return store;
+    }
+
+    // Adds the emergency, or overwrites its slot if it is already stored; returns the slot.
+    public int add(Emergency emergency) {
+        if (emergency.getId() <= 0) {
+            throw new IllegalArgumentException("Emergency must be saved before it is stored: " + emergency.getId());
+        }
+        Integer existing = slots.get(emergency.getId());
+        int slot = existing != null ? existing : allocate();
+        ids[slot] = emergency.getId();
+        latitude[slot] = emergency.getLatitude();
+        longitude[slot] = emergency.getLongitude();
+        quantity[slot] = emergency.getQuantity();
+        city[slot] = emergency.getCityId();
+        county[slot] = emergency.getCountyId();
+        if (existing == null) {
+            slots.put(emergency.getId(), slot);
+            size++;
+            if (orderSize == order.length) {
+                arrivalOrder();
+                if (orderSize == order.length) {
+                    order = Arrays.copyOf(order, order.length * 2);
+                }
+            }
+            orderPosition[slot] = orderSize;
+            order[orderSize++] = slot;
+        }
+        return slot;
+    }
+
+    private int allocate() {
+        if (freeHead != NO_SLOT) {
+            int slot = freeHead;
+            freeHead = nextFree[slot];
+            return slot;
+        }
+        if (highWater == ids.length) {
+            grow(ids.length * 2);
+        }
+        return highWater++;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        latitude = Arrays.copyOf(latitude, capacity);
+        longitude = Arrays.copyOf(longitude, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        city = Arrays.copyOf(city, capacity);
+        county = Arrays.copyOf(county, capacity);
+        nextFree = Arrays.copyOf(nextFree, capacity);
+        orderPosition = Arrays.copyOf(orderPosition, capacity);
+    }
+
+    public boolean remove(int emergencyId) {
+        Integer slot = slots.remove(emergencyId);
+        if (slot == null) {
+            return false;
+        }
+        ids[slot] = 0;
+        order[orderPosition[slot]] = NO_SLOT;
+        nextFree[slot] = freeHead;
+        freeHead = slot;
+        size--;
+        return true;
+    }
+
+    public boolean updateQuantity(int emergencyId, int units) {
+        int slot = slotOf(emergencyId);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        quantity[slot] = units;
+        return true;
+    }
+
+    /**
+     * The live slots in the order their emergencies were added, in the first size() entries of the
+     * returned array. The array is the store's own and is only valid until the next add or remove;
+     * removed slots are compacted out here, so a scan pays no sort and no copy.
+     */
+    public int[] arrivalOrder() {
+        if (orderSize != size) {
+            int kept = 0;
+            for (int i = 0; i < orderSize; i++) {
+                int slot = order[i];
+                if (slot != NO_SLOT) {
+                    orderPosition[slot] = kept;
+                    order[kept++] = slot;
+                }
+            }
+            orderSize = kept;
+        }
+        return order;
+    }
+
+    public int slotOf(int emergencyId) {
+        Integer slot = slots.get(emergencyId);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    public Emergency toEmergency(int slot) {
+        Emergency emergency = new Emergency(getCity(slot), getCounty(slot),
+                latitude[slot], longitude[slot], quantity[slot]);
+        emergency.setId(ids[slot]);
+        return emergency;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return highWater; }
+    public boolean isLive(int slot) { return ids[slot] != 0; }
+
+    public int getId(int slot) { return ids[slot]; }
+    public double getLatitude(int slot) { return latitude[slot]; }
+    public double getLongitude(int slot) { return longitude[slot]; }
+    public int getQuantity(int slot) { return quantity[slot]; }
+    public int getCityId(int slot) { return city[slot]; }
+    public int getCountyId(int slot) { return county[slot]; }
+    public String getCity(int slot) { return NameDictionary.CITIES.name(city[slot]); }
+    public String getCounty(int slot) { return NameDictionary.COUNTIES.name(county[slot]); }
+}
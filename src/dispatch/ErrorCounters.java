@@ -0,0 +1,168 @@
+package dispatch;
+
+import domain.ErrorLog;
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryErrors;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Missed-emergency and over-dispatch accounting kept off the dispatch path. Recording is a striped
+ * LongAdder increment; a background task turns the running totals into one errors row per interval,
+ * so the table holds per-interval rollups instead of a row per incident. The last few interval
+ * deltas are kept in memory for live rates.
+ *
+ * Totals only ever grow and each flush writes the difference from the last successful one, so an
+ * increment racing a flush, or a flush that fails, is simply carried into the next row.
+ *
+ * An emergency counts as missed once, the first time it is seen short of units, however many ticks
+ * it stays short; its id is remembered until it is resolved.
+ */
+public class ErrorCounters implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final RepositoryErrors repository;
+    private final long intervalMillis;
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder overDispatched = new LongAdder();
+    // Emergencies already counted as missed and not yet resolved.
+    private final Set<Integer> missedIds = ConcurrentHashMap.newKeySet();
+
+    // Totals as of the last written row and the last rollup; guarded by this.
+    private long flushedMissed;
+    private long flushedOverDispatched;
+    private long periodStart;
+    private long rolledMissed;
+    private long rolledOverDispatched;
+    private final long[] rollupMissed;
+    private final long[] rollupOverDispatched;
+    private int rollups;
+    private int next;
+
+    public ErrorCounters(RepositoryErrors repository, long intervalMillis, int historyIntervals) {
+        this.repository = repository;
+        this.intervalMillis = intervalMillis;
+        this.rollupMissed = new long[historyIntervals];
+        this.rollupOverDispatched = new long[historyIntervals];
+        this.periodStart = System.currentTimeMillis();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "error-counters-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleAtFixedRate(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.gauge("dispatch_missed_total", missed::sum);
+        MetricsRegistry.gauge("dispatch_over_dispatched_total", overDispatched::sum);
+        MetricsRegistry.gauge("dispatch_missed_per_minute", this::getMissedPerMinute);
+        MetricsRegistry.gauge("dispatch_over_dispatched_per_minute", this::getOverDispatchedPerMinute);
+    }
+
+    // Counts the emergency as missed unless it already was since it opened.
+    public void markMissed(int emergencyId) {
+        if (missedIds.add(emergencyId)) {
+            missed.increment();
+        }
+    }
+
+    public void markResolved(int emergencyId) {
+        missedIds.remove(emergencyId);
+    }
+
+    public void recordOverDispatched(int units) {
+        if (units > 0) {
+            overDispatched.add(units);
+        }
+    }
+
+    /**
+     * Marks every emergency the plan leaves short as missed. The plan is taken to cover all open
+     * emergencies, so ones counted earlier that are no longer in it are treated as resolved.
+     */
+    public void record(DispatchPlan plan) {
+        DispatchProblem problem = plan.getProblem();
+        Set<Integer> planned = new HashSet<>(problem.emergencyCount() * 2);
+        for (int e = 0; e < problem.emergencyCount(); e++) {
+            int id = problem.emergencyId(e);
+            planned.add(id);
+            if (plan.getUnmetDemand(e) > 0) {
+                markMissed(id);
+            }
+        }
+        missedIds.retainAll(planned);
+    }
+
+    synchronized void flush() {
+        long now = System.currentTimeMillis();
+        long totalMissed = missed.sum();
+        long totalOverDispatched = overDispatched.sum();
+
+        rollupMissed[next] = totalMissed - rolledMissed;
+        rollupOverDispatched[next] = totalOverDispatched - rolledOverDispatched;
+        rolledMissed = totalMissed;
+        rolledOverDispatched = totalOverDispatched;
+        next = (next + 1) % rollupMissed.length;
+        rollups = Math.min(rollups + 1, rollupMissed.length);
+
+        long deltaMissed = totalMissed - flushedMissed;
+        long deltaOverDispatched = totalOverDispatched - flushedOverDispatched;
+        if (deltaMissed != 0 || deltaOverDispatched != 0) {
+            try {
+                repository.save(new ErrorLog(0, (int) deltaMissed, (int) deltaOverDispatched, new Timestamp(periodStart)));
+            } catch (RuntimeException e) {
+                logger.error("Error flushing error counters, carrying {} missed / {} over-dispatched forward",
+                        deltaMissed, deltaOverDispatched, e);
+                return;
+            }
+        }
+        flushedMissed = totalMissed;
+        flushedOverDispatched = totalOverDispatched;
+        periodStart = now;
+    }
+
+    public synchronized double getMissedPerMinute() {
+        return perMinute(rollupMissed);
+    }
+
+    public synchronized double getOverDispatchedPerMinute() {
+        return perMinute(rollupOverDispatched);
+    }
+
+    private double perMinute(long[] ring) {
+        if (rollups == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < rollups; i++) {
+            sum += ring[i];
+        }
+        return sum * 60_000.0 / (rollups * intervalMillis);
+    }
+
+    public long getMissed() { return missed.sum(); }
+    public long getOverDispatched() { return overDispatched.sum(); }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
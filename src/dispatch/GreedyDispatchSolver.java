@@ -0,0 +1,51 @@
+package dispatch;
+
+import geo.GeoUtils;
+
+/**
+ * Serves emergencies in arrival order, each from its nearest stations that still have units,
+ * until its demand is met or supply runs out. The candidate scan works only on the problem's
+ * primitive arrays and allocates nothing.
+ */
+public class GreedyDispatchSolver implements DispatchSolver {
+
+    @Override
+    public DispatchPlan solve(DispatchProblem problem) {
+        long start = System.nanoTime();
+        DispatchPlan plan = new DispatchPlan(problem);
+
+        int stations = problem.stationCount();
+        int[] supply = problem.supply.clone();
+        int remainingSupply = problem.totalSupply();
+
+        for (int e = 0; e < problem.emergencyCount() && remainingSupply > 0; e++) {
+            double lat = problem.emergencyLat(e);
+            double lon = problem.emergencyLon(e);
+            int need = problem.demand(e);
+
+            while (need > 0 && remainingSupply > 0) {
+                int best = -1;
+                double bestDistance = Double.MAX_VALUE;
+                for (int s = 0; s < stations; s++) {
+                    if (supply[s] == 0) {
+                        continue;
+                    }
+                    double d = GeoUtils.haversineKm(lat, lon, problem.stationLat[s], problem.stationLon[s]);
+                    if (d < bestDistance) {
+                        bestDistance = d;
+                        best = s;
+                    }
+                }
+
+                int units = Math.min(need, supply[best]);
+                supply[best] -= units;
+                remainingSupply -= units;
+                need -= units;
+                plan.add(e, best, units, bestDistance);
+            }
+        }
+
+        plan.setSolveNanos(System.nanoTime() - start);
+        return plan;
+    }
+}
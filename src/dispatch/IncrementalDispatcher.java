@@ -0,0 +1,497 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Dispatch;
+import domain.Emergency;
+import eventlog.DispatchEvent;
+import eventlog.EventLog;
+import geo.StationIndex;
+import inventory.AmbulanceInventory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryDispatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps residual station supply and open emergency demand in memory and patches the allocation
+ * locally on each event. Candidate stations come from a private StationIndex over residual
+ * supply, so an event costs a nearest-neighbour lookup rather than a pass over the fleet.
+ * A full recompute through DispatchEngine tops the allocation up on a schedule; it solves over an
+ * EmergencyStore of the open emergencies' unmet demand that the events keep current.
+ *
+ * Station quantities, in the fleet given to recompute and in onStationChanged, are the units
+ * available at the station now: what ambulances.quantity holds once this dispatcher's inventory
+ * changes have been applied. Units already sent to an emergency are not in them, so a recompute
+ * only covers demand that is still unmet and never re-plans or re-sends units already assigned.
+ *
+ * With an EventLog, dispatches and resolutions are appended to the log instead of written to the
+ * database, together with the net change each persisted step made to station inventory; an
+ * EventProjector materialises them later. Without one, an AmbulanceInventory can be given: each
+ * persisted step then reserves the units it took from a station and releases the ones it handed
+ * back, so ambulances.quantity follows the dispatches.
+ */
+public class IncrementalDispatcher implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int INITIAL_CANDIDATES = 8;
+    private static final double CELL_DEGREES = 0.25;
+
+    private final DispatchEngine engine;
+    private final RepositoryDispatch repositoryDispatch;
+    private final EventLog eventLog;
+    private final AmbulanceInventory ambulanceInventory;
+    // Guards all the state below. A ReentrantLock rather than synchronized: persisting under it does
+    // I/O, and a virtual thread blocked inside a synchronized method pins its carrier thread.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private StationIndex residual = new StationIndex(CELL_DEGREES);
+    private final Map<Integer, Ambulances> stations = new HashMap<>();
+    private final Map<Integer, OpenEmergency> open = new HashMap<>();
+    // The same open emergencies column-wise, with their unmet demand; what a full recompute solves over.
+    private EmergencyStore store = new EmergencyStore(64);
+    // Emergencies still short of units, in arrival order; retried when supply comes back.
+    private final Deque<OpenEmergency> waiting = new ArrayDeque<>();
+    // Units taken from (negative) or returned to each station since the last persist.
+    private final Map<Integer, Integer> inventory = new LinkedHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public IncrementalDispatcher(DispatchEngine engine, RepositoryDispatch repositoryDispatch) {
+        this(engine, repositoryDispatch, null, null);
+    }
+
+    public IncrementalDispatcher(DispatchEngine engine, RepositoryDispatch repositoryDispatch, EventLog eventLog) {
+        this(engine, repositoryDispatch, eventLog, null);
+    }
+
+    public IncrementalDispatcher(DispatchEngine engine, RepositoryDispatch repositoryDispatch,
+                                 AmbulanceInventory ambulanceInventory) {
+        this(engine, repositoryDispatch, null, ambulanceInventory);
+    }
+
+    private IncrementalDispatcher(DispatchEngine engine, RepositoryDispatch repositoryDispatch, EventLog eventLog,
+                                  AmbulanceInventory ambulanceInventory) {
+        this.engine = engine;
+        this.repositoryDispatch = repositoryDispatch;
+        this.eventLog = eventLog;
+        this.ambulanceInventory = ambulanceInventory;
+    }
+
+    /**
+     * Replaces the open emergencies with the given ones and recomputes over them; see
+     * recompute(fleet, mode). Emergencies already open keep the units assigned to them and take
+     * their demand from the list; open ones missing from the list are dropped as resolved.
+     */
+    public DispatchPlan recompute(List<Emergency> emergencies, List<Ambulances> fleet, DispatchMode mode) {
+        lock.lock();
+        try {
+            Map<Integer, OpenEmergency> previous = new HashMap<>(open);
+            open.clear();
+            store = new EmergencyStore(emergencies.size() * 2);
+            for (Emergency emergency : emergencies) {
+                OpenEmergency entry = previous.remove(emergency.getId());
+                if (entry == null) {
+                    entry = new OpenEmergency(emergency, emergency.getQuantity());
+                } else {
+                    entry.demand = emergency.getQuantity();
+                }
+                open.put(entry.id(), entry);
+                store.add(emergency);
+                unmet(entry);
+            }
+            previous.keySet().forEach(this::resolved);
+            return recompute(fleet, mode);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Solves the unmet demand of the open emergencies, read straight from the store's columns, over
+     * the units available at the given stations, and adds the result to what each emergency already
+     * has. Every allocation in the plan is a new dispatch and is persisted as one.
+     */
+    public DispatchPlan recompute(List<Ambulances> fleet, DispatchMode mode) {
+        lock.lock();
+        try {
+            DispatchPlan plan = engine.plan(store, fleet, mode);
+            DispatchProblem problem = plan.getProblem();
+
+            residual = new StationIndex(CELL_DEGREES);
+            stations.clear();
+            waiting.clear();
+            for (int s = 0; s < fleet.size(); s++) {
+                Ambulances station = fleet.get(s);
+                stations.put(station.getId(), station);
+                Ambulances copy = copyOf(station);
+                copy.setQuantity(plan.getResidualSupply(s));
+                residual.onSaved(copy);
+            }
+
+            List<Dispatch> dispatches = new ArrayList<>();
+            for (int i = 0; i < plan.size(); i++) {
+                OpenEmergency entry = open.get(problem.emergencyId(plan.getEmergencyIndex(i)));
+                Ambulances station = fleet.get(plan.getStationIndex(i));
+                int units = plan.getQuantity(i);
+                entry.assign(station.getId(), units);
+                inventoryChanged(station.getId(), -units);
+                dispatches.add(Dispatch.fromIds(station.getCityId(), station.getCountyId(),
+                        entry.emergency.getCityId(), entry.emergency.getCountyId(), units));
+            }
+            for (int e = 0; e < problem.emergencyCount(); e++) {
+                OpenEmergency entry = open.get(problem.emergencyId(e));
+                unmet(entry);
+                if (entry.shortfall() > 0) {
+                    waiting.add(entry);
+                    missed(entry.id());
+                }
+            }
+            persist(dispatches);
+
+            logger.info("Recomputed allocation: {} open emergencies, {} waiting for units, {} new dispatches",
+                    open.size(), waiting.size(), dispatches.size());
+            return plan;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Reloads the open emergencies from the supplier on every run.
+    public void scheduleRecompute(Supplier<List<Emergency>> emergencies, Supplier<List<Ambulances>> fleet,
+                                  DispatchMode mode, long periodMillis) {
+        schedule(() -> recompute(emergencies.get(), fleet.get(), mode), periodMillis);
+    }
+
+    // Recomputes over the emergencies this dispatcher already holds.
+    public void scheduleRecompute(Supplier<List<Ambulances>> fleet, DispatchMode mode, long periodMillis) {
+        schedule(() -> recompute(fleet.get(), mode), periodMillis);
+    }
+
+    private void schedule(Runnable recompute, long periodMillis) {
+        lock.lock();
+        try {
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "dispatch-recompute");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    recompute.run();
+                } catch (RuntimeException e) {
+                    logger.error("Error during scheduled dispatch recompute", e);
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Dispatch> onEmergency(Emergency emergency) {
+        lock.lock();
+        try {
+            if (open.containsKey(emergency.getId())) {
+                return onDemandChanged(emergency.getId(), emergency.getQuantity());
+            }
+            OpenEmergency entry = new OpenEmergency(emergency, emergency.getQuantity());
+            open.put(entry.id(), entry);
+            store.add(emergency);
+
+            List<Dispatch> dispatches = new ArrayList<>();
+            serve(entry, dispatches);
+            if (entry.shortfall() > 0) {
+                waiting.add(entry);
+                missed(entry.id());
+            }
+            return persist(dispatches);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Dispatch> onDemandChanged(int emergencyId, int quantity) {
+        lock.lock();
+        try {
+            OpenEmergency entry = open.get(emergencyId);
+            if (entry == null) {
+                return List.of();
+            }
+
+            entry.demand = quantity;
+            List<Dispatch> dispatches = new ArrayList<>();
+            if (entry.shortfall() > 0) {
+                serve(entry, dispatches);
+                if (entry.shortfall() > 0) {
+                    if (!waiting.contains(entry)) {
+                        waiting.add(entry);
+                    }
+                    missed(entry.id());
+                }
+            } else if (entry.shortfall() < 0) {
+                // Hand surplus back, farthest stations first, and let waiting emergencies use it.
+                int surplus = -entry.shortfall();
+                if (engine.getErrorCounters() != null) {
+                    engine.getErrorCounters().recordOverDispatched(surplus);
+                }
+                for (int i = entry.size - 1; i >= 0 && surplus > 0; i--) {
+                    int units = Math.min(surplus, entry.units[i]);
+                    entry.units[i] -= units;
+                    entry.allocated -= units;
+                    surplus -= units;
+                    release(entry.stationIds[i], units);
+                }
+                entry.compact();
+                waiting.remove(entry);
+                serveWaiting(dispatches);
+            }
+            unmet(entry);
+            return persist(dispatches);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The operator closed the case: its remaining demand is dropped and units already sent stay out.
+    public void onResolved(int emergencyId) {
+        lock.lock();
+        try {
+            OpenEmergency entry = open.remove(emergencyId);
+            store.remove(emergencyId);
+            if (eventLog != null) {
+                eventLog.append(new DispatchEvent.Resolved(emergencyId));
+            }
+            if (entry != null) {
+                waiting.remove(entry);
+            }
+            resolved(emergencyId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Dispatch> onStationChanged(Ambulances station) {
+        lock.lock();
+        try {
+            // The report is what the station has available now, so it replaces the residual count.
+            int before = stations.containsKey(station.getId()) ? residual.getQuantity(station.getId()) : 0;
+            stations.put(station.getId(), station);
+            residual.onSaved(copyOf(station));
+
+            List<Dispatch> dispatches = new ArrayList<>();
+            if (station.getQuantity() > before) {
+                serveWaiting(dispatches);
+            }
+            return persist(dispatches);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void serveWaiting(List<Dispatch> dispatches) {
+        Iterator<OpenEmergency> it = waiting.iterator();
+        while (it.hasNext() && residual.size() > 0) {
+            OpenEmergency entry = it.next();
+            serve(entry, dispatches);
+            if (entry.shortfall() <= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private void serve(OpenEmergency entry, List<Dispatch> dispatches) {
+        Emergency emergency = entry.emergency;
+        int k = INITIAL_CANDIDATES;
+        while (entry.shortfall() > 0 && residual.size() > 0) {
+            int[] candidates = residual.nearest(emergency.getLatitude(), emergency.getLongitude(), k);
+            for (int i = 0; i < candidates.length && entry.shortfall() > 0; i++) {
+                int stationId = candidates[i];
+                int available = residual.getQuantity(stationId);
+                int units = Math.min(available, entry.shortfall());
+                if (units <= 0) {
+                    continue;
+                }
+                residual.updateQuantity(stationId, available - units);
+                entry.assign(stationId, units);
+                inventoryChanged(stationId, -units);
+
+                Ambulances station = stations.get(stationId);
+                dispatches.add(Dispatch.fromIds(station.getCityId(), station.getCountyId(),
+                        emergency.getCityId(), emergency.getCountyId(), units));
+            }
+            if (candidates.length < k) {
+                break;
+            }
+            k *= 2;
+        }
+        unmet(entry);
+    }
+
+    private void release(int stationId, int units) {
+        residual.updateQuantity(stationId, residual.getQuantity(stationId) + units);
+        inventoryChanged(stationId, units);
+    }
+
+    // Keeps the store's quantity at what a recompute still has to cover for this emergency.
+    private void unmet(OpenEmergency entry) {
+        store.updateQuantity(entry.id(), Math.max(0, entry.shortfall()));
+    }
+
+    // Counted once per emergency by ErrorCounters, however many steps it stays short.
+    private void missed(int emergencyId) {
+        if (engine.getErrorCounters() != null) {
+            engine.getErrorCounters().markMissed(emergencyId);
+        }
+    }
+
+    private void resolved(int emergencyId) {
+        if (engine.getErrorCounters() != null) {
+            engine.getErrorCounters().markResolved(emergencyId);
+        }
+    }
+
+    private void inventoryChanged(int stationId, int delta) {
+        if (eventLog != null || ambulanceInventory != null) {
+            inventory.merge(stationId, delta, Integer::sum);
+        }
+    }
+
+    private List<Dispatch> persist(List<Dispatch> dispatches) {
+        if (eventLog != null) {
+            List<DispatchEvent> events = new ArrayList<>(dispatches.size() + inventory.size());
+            dispatches.forEach(dispatch -> events.add(new DispatchEvent.Dispatched(dispatch)));
+            inventory.forEach((stationId, delta) -> {
+                if (delta != 0) {
+                    events.add(new DispatchEvent.InventoryChanged(stationId, delta));
+                }
+            });
+            inventory.clear();
+            if (!events.isEmpty()) {
+                eventLog.appendAll(events);
+            }
+        } else {
+            // Each change leaves the map before it is applied, so a failure cannot apply it twice.
+            Iterator<Map.Entry<Integer, Integer>> changes = inventory.entrySet().iterator();
+            while (ambulanceInventory != null && changes.hasNext()) {
+                Map.Entry<Integer, Integer> change = changes.next();
+                changes.remove();
+                applyInventory(change.getKey(), change.getValue());
+            }
+            if (!dispatches.isEmpty()) {
+                repositoryDispatch.saveAll(dispatches);
+            }
+        }
+        return dispatches;
+    }
+
+    private void applyInventory(int stationId, int delta) {
+        if (delta > 0) {
+            ambulanceInventory.release(stationId, delta);
+        } else if (delta < 0 && !ambulanceInventory.reserve(stationId, -delta)) {
+            logger.warn("Station {} no longer has {} units to take, its count was changed elsewhere", stationId, -delta);
+        }
+    }
+
+    // Whether dispatches and resolutions go through the event log rather than straight to the database.
+    public boolean isEventLogged() {
+        return eventLog != null;
+    }
+
+    private static Ambulances copyOf(Ambulances station) {
+        Ambulances copy = new Ambulances(station.getCounty(), station.getCity(),
+                station.getLatitude(), station.getLongitude(), station.getQuantity());
+        copy.setId(station.getId());
+        return copy;
+    }
+
+    public int getOpenCount() {
+        lock.lock();
+        try {
+            return open.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class OpenEmergency {
+        private final Emergency emergency;
+        private int demand;
+        private int allocated;
+        private int[] stationIds = new int[2];
+        private int[] units = new int[2];
+        private int size;
+
+        private OpenEmergency(Emergency emergency, int demand) {
+            this.emergency = emergency;
+            this.demand = demand;
+        }
+
+        private int id() {
+            return emergency.getId();
+        }
+
+        private int shortfall() {
+            return demand - allocated;
+        }
+
+        private void assign(int stationId, int count) {
+            if (size == stationIds.length) {
+                stationIds = Arrays.copyOf(stationIds, size * 2);
+                units = Arrays.copyOf(units, size * 2);
+            }
+            stationIds[size] = stationId;
+            units[size] = count;
+            size++;
+            allocated += count;
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (units[i] > 0) {
+                    stationIds[kept] = stationIds[i];
+                    units[kept] = units[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package dispatch;
+
+import geo.GeoUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optimal allocation as a min-cost max-flow: source -> station (capacity = units),
+ * station -> emergency (uncapacitated, cost = distance), emergency -> sink (capacity = demand).
+ * Solved with successive shortest paths over Johnson potentials. The bipartite part of the graph
+ * is dense, so it is kept implicit in a station x emergency cost/flow matrix.
+ * If the time budget runs out the fallback solver's plan is returned instead.
+ */
+public class MinCostFlowDispatchSolver implements DispatchSolver {
+
+    private final long timeBudgetNanos;
+    private final DispatchSolver fallback;
+
+    public MinCostFlowDispatchSolver(long timeBudgetMillis) {
+        this(timeBudgetMillis, new GreedyDispatchSolver());
+    }
+
+    public MinCostFlowDispatchSolver(long timeBudgetMillis, DispatchSolver fallback) {
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        this.fallback = fallback;
+    }
+
+    @Override
+    public DispatchPlan solve(DispatchProblem problem) {
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetNanos;
+
+        int stations = problem.stationCount();
+        int emergencies = problem.emergencyCount();
+
+        double[] cost = new double[stations * emergencies];
+        for (int s = 0; s < stations; s++) {
+            for (int e = 0; e < emergencies; e++) {
+                cost[s * emergencies + e] = GeoUtils.haversineKm(
+                        problem.stationLat[s], problem.stationLon[s], problem.emergencyLat(e), problem.emergencyLon(e));
+            }
+        }
+
+        int[] flow = new int[stations * emergencies];
+        int[] supplyLeft = problem.supply.clone();
+        int[] demandLeft = problem.demands();
+
+        // Stations are nodes [0, stations), emergencies follow, then the sink and the source.
+        int sink = stations + emergencies;
+        int source = sink + 1;
+        int nodes = source + 1;
+        double[] potential = new double[nodes];
+        double[] dist = new double[nodes];
+        int[] prev = new int[nodes];
+        boolean[] done = new boolean[nodes];
+        Heap heap = new Heap(nodes);
+
+        int remaining = Math.min(problem.totalSupply(), problem.totalDemand());
+        while (remaining > 0) {
+            if (System.nanoTime() > deadline) {
+                DispatchPlan plan = fallback.solve(problem);
+                plan.markFallback();
+                plan.setSolveNanos(System.nanoTime() - start);
+                return plan;
+            }
+
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(prev, -1);
+            Arrays.fill(done, false);
+            heap.clear();
+            dist[source] = 0;
+            heap.push(source, 0);
+
+            // Dijkstra on reduced costs, stopped as soon as the sink is settled.
+            while (!heap.isEmpty()) {
+                int u = heap.pop();
+                if (done[u]) {
+                    continue;
+                }
+                done[u] = true;
+                if (u == sink) {
+                    break;
+                }
+
+                if (u == source) {
+                    for (int s = 0; s < stations; s++) {
+                        if (supplyLeft[s] > 0) {
+                            relax(u, s, potential[u] - potential[s], dist, prev, done, heap);
+                        }
+                    }
+                } else if (u < stations) {
+                    int row = u * emergencies;
+                    for (int e = 0; e < emergencies; e++) {
+                        int v = stations + e;
+                        relax(u, v, cost[row + e] + potential[u] - potential[v], dist, prev, done, heap);
+                    }
+                } else {
+                    int e = u - stations;
+                    if (demandLeft[e] > 0) {
+                        relax(u, sink, potential[u] - potential[sink], dist, prev, done, heap);
+                    }
+                    for (int s = 0; s < stations; s++) {
+                        if (flow[s * emergencies + e] > 0) {
+                            relax(u, s, -cost[s * emergencies + e] + potential[u] - potential[s], dist, prev, done, heap);
+                        }
+                    }
+                }
+            }
+            if (!done[sink]) {
+                break;
+            }
+
+            // Capping at the sink distance keeps reduced costs non-negative for unsettled nodes.
+            double sinkDistance = dist[sink];
+            for (int v = 0; v < nodes; v++) {
+                potential[v] += Math.min(dist[v], sinkDistance);
+            }
+
+            int target = prev[sink];
+            int bottleneck = demandLeft[target - stations];
+            int v = target;
+            while (prev[v] != source) {
+                int u = prev[v];
+                if (u >= stations) {
+                    bottleneck = Math.min(bottleneck, flow[v * emergencies + (u - stations)]);
+                }
+                v = u;
+            }
+            bottleneck = Math.min(bottleneck, supplyLeft[v]);
+
+            supplyLeft[v] -= bottleneck;
+            demandLeft[target - stations] -= bottleneck;
+            v = target;
+            while (prev[v] != source) {
+                int u = prev[v];
+                if (u < stations) {
+                    flow[u * emergencies + (v - stations)] += bottleneck;
+                } else {
+                    flow[v * emergencies + (u - stations)] -= bottleneck;
+                }
+                v = u;
+            }
+            remaining -= bottleneck;
+        }
+
+        DispatchPlan plan = new DispatchPlan(problem);
+        for (int s = 0; s < stations; s++) {
+            int row = s * emergencies;
+            for (int e = 0; e < emergencies; e++) {
+                if (flow[row + e] > 0) {
+                    plan.add(e, s, flow[row + e], cost[row + e]);
+                }
+            }
+        }
+        plan.setSolveNanos(System.nanoTime() - start);
+        return plan;
+    }
+
+    private static void relax(int u, int v, double reducedCost, double[] dist, int[] prev, boolean[] done, Heap heap) {
+        double candidate = dist[u] + Math.max(0, reducedCost);
+        if (!done[v] && candidate < dist[v]) {
+            dist[v] = candidate;
+            prev[v] = u;
+            heap.push(v, candidate);
+        }
+    }
+
+    // Binary min-heap over (node, key) pairs with lazy deletion; stale entries are skipped on pop.
+    private static final class Heap {
+        private int[] nodes;
+        private double[] keys;
+        private int size;
+
+        private Heap(int capacity) {
+            this.nodes = new int[capacity];
+            this.keys = new double[capacity];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void push(int node, double key) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            keys[i] = key;
+        }
+
+        private int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            double lastKey = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= lastKey) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            keys[i] = lastKey;
+            return top;
+        }
+    }
+}
@@ -2,8 +2,9 @@ package domain;
 
 public class Ambulances {
     private int id;
-    private String county;
-    private String city;
+    // Ids in NameDictionary.COUNTIES / CITIES.
+    private int countyId;
+    private int cityId;
     private double latitude;
     private double longitude;
     private int quantity;
@@ -11,8 +12,8 @@ public class Ambulances {
     public Ambulances() {}
 
     public Ambulances(String county, String city, double latitude, double longitude, int quantity) {
-        this.county = county;
-        this.city = city;
+        this.countyId = NameDictionary.COUNTIES.id(county);
+        this.cityId = NameDictionary.CITIES.id(city);
         this.latitude = latitude;
         this.longitude = longitude;
         this.quantity = quantity;
@@ -26,19 +27,27 @@ public class Ambulances {
     }
 
     public String getCounty() {
-        return county;
+        return NameDictionary.COUNTIES.name(countyId);
     }
 
     public void setCounty(String county) {
-        this.county = county;
+        this.countyId = NameDictionary.COUNTIES.id(county);
+    }
+
+    public int getCountyId() {
+        return countyId;
     }
 
     public String getCity() {
-        return city;
+        return NameDictionary.CITIES.name(cityId);
     }
 
     public void setCity(String city) {
-        this.city = city;
+        this.cityId = NameDictionary.CITIES.id(city);
+    }
+
+    public int getCityId() {
+        return cityId;
     }
 
     public double getLatitude() {
@@ -1,41 +1,68 @@
 package domain;
 
+import java.sql.Timestamp;
+
 public class Dispatch {
     private int id;
-    private String sourceCity;
-    private String sourceCounty;
-    private String targetCity;
-    private String targetCounty;
+    // Ids in NameDictionary.CITIES / COUNTIES.
+    private int sourceCityId;
+    private int sourceCountyId;
+    private int targetCityId;
+    private int targetCountyId;
     private int quantity;
+    // When the dispatch was decided, not when its row was written.
+    private Timestamp timestamp = new Timestamp(System.currentTimeMillis());
 
-
-    public Dispatch(int id, String sourceCity, String sourceCounty, String targetCity, String targetCounty, int quantity) {}
+    public Dispatch(int id, String sourceCity, String sourceCounty, String targetCity, String targetCounty, int quantity) {
+        this(sourceCity, sourceCounty, targetCity, targetCounty, quantity);
+        this.id = id;
+    }
 
     public Dispatch(String sourceCity, String sourceCounty, String targetCity, String targetCounty, int quantity) {
-        this.sourceCity = sourceCity;
-        this.sourceCounty = sourceCounty;
-        this.targetCity = targetCity;
-        this.targetCounty = targetCounty;
+        this.sourceCityId = NameDictionary.CITIES.id(sourceCity);
+        this.sourceCountyId = NameDictionary.COUNTIES.id(sourceCounty);
+        this.targetCityId = NameDictionary.CITIES.id(targetCity);
+        this.targetCountyId = NameDictionary.COUNTIES.id(targetCounty);
         this.quantity = quantity;
 
     }
 
+    private Dispatch() {}
+
+    // Builds a dispatch from dictionary ids already at hand, skipping the name lookups.
+    public static Dispatch fromIds(int sourceCityId, int sourceCountyId, int targetCityId, int targetCountyId, int quantity) {
+        Dispatch dispatch = new Dispatch();
+        dispatch.sourceCityId = sourceCityId;
+        dispatch.sourceCountyId = sourceCountyId;
+        dispatch.targetCityId = targetCityId;
+        dispatch.targetCountyId = targetCountyId;
+        dispatch.quantity = quantity;
+        return dispatch;
+    }
+
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
 
-    public String getSourceCity() { return sourceCity; }
-    public void setSourceCity(String sourceCity) { this.sourceCity = sourceCity; }
+    public String getSourceCity() { return NameDictionary.CITIES.name(sourceCityId); }
+    public void setSourceCity(String sourceCity) { this.sourceCityId = NameDictionary.CITIES.id(sourceCity); }
+    public int getSourceCityId() { return sourceCityId; }
 
-    public String getSourceCounty() { return sourceCounty; }
-    public void setSourceCounty(String sourceCounty) { this.sourceCounty = sourceCounty; }
+    public String getSourceCounty() { return NameDictionary.COUNTIES.name(sourceCountyId); }
+    public void setSourceCounty(String sourceCounty) { this.sourceCountyId = NameDictionary.COUNTIES.id(sourceCounty); }
+    public int getSourceCountyId() { return sourceCountyId; }
 
-    public String getTargetCity() { return targetCity; }
-    public void setTargetCity(String targetCity) { this.targetCity = targetCity; }
+    public String getTargetCity() { return NameDictionary.CITIES.name(targetCityId); }
+    public void setTargetCity(String targetCity) { this.targetCityId = NameDictionary.CITIES.id(targetCity); }
+    public int getTargetCityId() { return targetCityId; }
 
-    public String getTargetCounty() { return targetCounty; }
-    public void setTargetCounty(String targetCounty) { this.targetCounty = targetCounty; }
+    public String getTargetCounty() { return NameDictionary.COUNTIES.name(targetCountyId); }
+    public void setTargetCounty(String targetCounty) { this.targetCountyId = NameDictionary.COUNTIES.id(targetCounty); }
+    public int getTargetCountyId() { return targetCountyId; }
 
     public int getQuantity() { return quantity; }
     public void setQuantity(int quantity) { this.quantity = quantity; }
 
+    public Timestamp getTimestamp() { return timestamp; }
+    public void setTimestamp(Timestamp timestamp) { this.timestamp = timestamp; }
+
 }
@@ -2,29 +2,36 @@ package domain;
 
 public class Emergency {
     private int id;
-    private String city;
-    private String county;
+    // Ids in NameDictionary.CITIES / COUNTIES.
+    private int cityId;
+    private int countyId;
     private double latitude;
     private double longitude;
     private int quantity;
+    private boolean resolved;
 
-    public Emergency(String city, String county, double latitude, double longitude, int quantity) {}
+    public Emergency(String city, String county, double latitude, double longitude, int quantity) {
+        this(city, county, latitude, longitude, quantity, false);
+    }
 
-    public Emergency(String city, String county, double latitude, double longitude, int quantity, boolean resolved,) {
-        this.city = city;
-        this.county = county;
+    public Emergency(String city, String county, double latitude, double longitude, int quantity, boolean resolved) {
+        this.cityId = NameDictionary.CITIES.id(city);
+        this.countyId = NameDictionary.COUNTIES.id(county);
         this.latitude = latitude;
         this.longitude = longitude;
         this.quantity = quantity;
+        this.resolved = resolved;
     }
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
 
-    public String getCity() { return city; }
-    public void setCity(String city) { this.city = city; }
+    public String getCity() { return NameDictionary.CITIES.name(cityId); }
+    public void setCity(String city) { this.cityId = NameDictionary.CITIES.id(city); }
+    public int getCityId() { return cityId; }
 
-    public String getCounty() { return county; }
-    public void setCounty(String county) { this.county = county; }
+    public String getCounty() { return NameDictionary.COUNTIES.name(countyId); }
+    public void setCounty(String county) { this.countyId = NameDictionary.COUNTIES.id(county); }
+    public int getCountyId() { return countyId; }
 
     public double getLatitude() { return latitude; }
     public void setLatitude(double latitude) { this.latitude = latitude; }
@@ -35,4 +42,7 @@ public class Emergency {
     public int getQuantity() { return quantity; }
     public void setQuantity(int quantity) { this.quantity = quantity; }
 
+    public boolean isResolved() { return resolved; }
+    public void setResolved(boolean resolved) { this.resolved = resolved; }
+
 }
@@ -1,25 +1,28 @@
 package domain;
 
 public class Location {
-    private String name;
-    private String county;
+    // Ids in NameDictionary.CITIES / COUNTIES; a location's name is the city name used elsewhere.
+    private int nameId;
+    private int countyId;
     private double latitude;
     private double longitude;
 
     public Location() {}
 
     public Location(String name, String county, double latitude, double longitude) {
-        this.name = name;
-        this.county = county;
+        this.nameId = NameDictionary.CITIES.id(name);
+        this.countyId = NameDictionary.COUNTIES.id(county);
         this.latitude = latitude;
         this.longitude = longitude;
     }
 
-    public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
+    public String getName() { return NameDictionary.CITIES.name(nameId); }
+    public void setName(String name) { this.nameId = NameDictionary.CITIES.id(name); }
+    public int getNameId() { return nameId; }
 
-    public String getCounty() { return county; }
-    public void setCounty(String county) { this.county = county; }
+    public String getCounty() { return NameDictionary.COUNTIES.name(countyId); }
+    public void setCounty(String county) { this.countyId = NameDictionary.COUNTIES.id(county); }
+    public int getCountyId() { return countyId; }
 
     public double getLatitude() { return latitude; }
     public void setLatitude(double latitude) { this.latitude = latitude; }
@@ -3,6 +3,8 @@ package domain;
 public class Login {
     private String name;
     private String passwordHash;
+    // A new password in plaintext; RepositoryLogin writes only its hash and never reads it back.
+    private char[] password;
 
     public Login() {}
 
@@ -16,4 +18,7 @@ public class Login {
 
     public String getPasswordHash() { return passwordHash; }
     public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
+
+    public char[] getPassword() { return password; }
+    public void setPassword(char[] password) { this.password = password; }
 }
@@ -0,0 +1,71 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns city and county names to dense int ids shared by every domain object, so a thousand
+ * emergencies in one city hold one String between them and compare cities as ints. Id 0 is null.
+ *
+ * Ids are process-local and assigned in first-seen order; RepositoryLocation.loadNameDictionary
+ * assigns the known locations first. Lookups are lock-free, only new names take the lock. Names
+ * are never removed, so the dictionary grows with the number of distinct places ever seen.
+ */
+public final class NameDictionary {
+
+    public static final NameDictionary CITIES = new NameDictionary();
+    public static final NameDictionary COUNTIES = new NameDictionary();
+
+    public static final int NULL_ID = 0;
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Written under the lock; a reader only asks for ids it got from ids, which publishes the slot.
+    private volatile String[] names = new String[256];
+    private int size = 1;
+
+    private NameDictionary() {}
+
+    // Returns the id for the name, assigning the next one if it has not been seen yet.
+    public int id(String name) {
+        if (name == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+
+    // Returns the id for the name without adding it, or UNKNOWN.
+    public int find(String name) {
+        if (name == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : UNKNOWN;
+    }
+
+    private synchronized int add(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = name;
+        names = current;
+        ids.put(name, size);
+        return size++;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    // Number of ids handed out, including the null id.
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,27 @@
+package escalation;
+
+import domain.Emergency;
+
+import java.util.Comparator;
+
+/**
+ * An emergency waiting for an operator. The sequence number is unique per escalation and breaks
+ * ties, so two cases never compare equal in the queue.
+ *
+ * The demand is copied from the emergency when the case is created: the Emergency stays mutable,
+ * and a key that changed under the TreeSet ordering the queue would corrupt it. A new quantity is
+ * picked up by escalating the emergency again, which re-ranks the case.
+ */
+public record EscalatedCase(long sequence, Emergency emergency, int quantity, Severity severity, long escalatedAtMillis) {
+
+    public EscalatedCase(long sequence, Emergency emergency, Severity severity, long escalatedAtMillis) {
+        this(sequence, emergency, emergency.getQuantity(), severity, escalatedAtMillis);
+    }
+
+    // Most urgent first: higher severity, then larger demand, then longest waiting.
+    public static final Comparator<EscalatedCase> PRIORITY = Comparator
+            .comparing(EscalatedCase::severity, Comparator.reverseOrder())
+            .thenComparing(EscalatedCase::quantity, Comparator.reverseOrder())
+            .thenComparingLong(EscalatedCase::escalatedAtMillis)
+            .thenComparingLong(EscalatedCase::sequence);
+}
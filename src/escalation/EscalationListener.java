@@ -0,0 +1,8 @@
+package escalation;
+
+public interface EscalationListener {
+
+    void onEscalated(EscalatedCase escalated);
+
+    void onRemoved(int emergencyId);
+}
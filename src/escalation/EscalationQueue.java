@@ -0,0 +1,130 @@
+package escalation;
+
+import domain.Emergency;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bounded in-memory priority queue of cases escalated to a human operator, ordered by
+ * EscalatedCase.PRIORITY. When full, a new case displaces the least urgent one, or is rejected
+ * if it is itself the least urgent. Listeners are called under the queue's lock, in the same
+ * order the queue changes, and must not block.
+ */
+public class EscalationQueue {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final int capacity;
+    private final TreeSet<EscalatedCase> ordered = new TreeSet<>(EscalatedCase.PRIORITY);
+    private final Map<Integer, EscalatedCase> byEmergency = new HashMap<>();
+    private final List<EscalationListener> listeners = new CopyOnWriteArrayList<>();
+    private long sequence;
+    private long evicted;
+    private long rejected;
+
+    public EscalationQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void addListener(EscalationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(EscalationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues the emergency, or re-ranks it if already queued; severity only ever goes up and the
+     * original escalation time is kept so re-escalating does not reset its age.
+     */
+    public synchronized boolean escalate(Emergency emergency, Severity severity) {
+        EscalatedCase existing = byEmergency.remove(emergency.getId());
+        long escalatedAt = System.currentTimeMillis();
+        if (existing != null) {
+            ordered.remove(existing);
+            escalatedAt = existing.escalatedAtMillis();
+            if (existing.severity().compareTo(severity) > 0) {
+                severity = existing.severity();
+            }
+        }
+        EscalatedCase candidate = new EscalatedCase(++sequence, emergency, severity, escalatedAt);
+
+        if (ordered.size() == capacity) {
+            EscalatedCase lowest = ordered.last();
+            if (EscalatedCase.PRIORITY.compare(candidate, lowest) > 0) {
+                rejected++;
+                logger.warn("Escalation queue full, rejecting emergency {}", emergency.getId());
+                if (existing != null) {
+                    listeners.forEach(l -> l.onRemoved(emergency.getId()));
+                }
+                return false;
+            }
+            ordered.pollLast();
+            byEmergency.remove(lowest.emergency().getId());
+            evicted++;
+            listeners.forEach(l -> l.onRemoved(lowest.emergency().getId()));
+        }
+
+        ordered.add(candidate);
+        byEmergency.put(emergency.getId(), candidate);
+        listeners.forEach(l -> l.onEscalated(candidate));
+        return true;
+    }
+
+    // Hands the most urgent case to an operator.
+    public synchronized Optional<EscalatedCase> poll() {
+        EscalatedCase top = ordered.pollFirst();
+        if (top == null) {
+            return Optional.empty();
+        }
+        byEmergency.remove(top.emergency().getId());
+        listeners.forEach(l -> l.onRemoved(top.emergency().getId()));
+        return Optional.of(top);
+    }
+
+    public synchronized boolean resolve(int emergencyId) {
+        EscalatedCase existing = byEmergency.remove(emergencyId);
+        if (existing == null) {
+            return false;
+        }
+        ordered.remove(existing);
+        listeners.forEach(l -> l.onRemoved(emergencyId));
+        return true;
+    }
+
+    // The most urgent cases, in priority order.
+    public synchronized List<EscalatedCase> snapshot(int limit) {
+        List<EscalatedCase> cases = new ArrayList<>(Math.min(limit, ordered.size()));
+        Iterator<EscalatedCase> it = ordered.iterator();
+        while (it.hasNext() && cases.size() < limit) {
+            cases.add(it.next());
+        }
+        return cases;
+    }
+
+    /**
+     * Takes a snapshot and registers the listener atomically, so the listener sees every change
+     * made after the snapshot and none made before it.
+     */
+    public synchronized List<EscalatedCase> subscribe(EscalationListener listener, int limit) {
+        listeners.add(listener);
+        return snapshot(limit);
+    }
+
+    public synchronized int size() { return ordered.size(); }
+    public synchronized long getEvicted() { return evicted; }
+    public synchronized long getRejected() { return rejected; }
+}
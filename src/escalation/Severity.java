@@ -0,0 +1,8 @@
+package escalation;
+
+public enum Severity {
+    LOW,
+    MODERATE,
+    HIGH,
+    CRITICAL
+}
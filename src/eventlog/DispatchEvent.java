@@ -0,0 +1,19 @@
+package eventlog;
+
+import domain.Dispatch;
+
+/**
+ * What the dispatch path records in the EventLog instead of writing rows directly. EventProjector
+ * later turns each kind into its table update.
+ */
+public sealed interface DispatchEvent {
+
+    // Units sent from one station to an emergency; becomes a dispatches row.
+    record Dispatched(Dispatch dispatch) implements DispatchEvent {}
+
+    // Units returned to (positive) or taken from (negative) a station's ambulances row.
+    record InventoryChanged(int stationId, int delta) implements DispatchEvent {}
+
+    // The operator closed the emergency; becomes resolved = TRUE.
+    record Resolved(int emergencyId) implements DispatchEvent {}
+}
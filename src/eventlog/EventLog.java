@@ -0,0 +1,462 @@
+package eventlog;
+
+import domain.Dispatch;
+import eventlog.DispatchEvent.Dispatched;
+import eventlog.DispatchEvent.InventoryChanged;
+import eventlog.DispatchEvent.Resolved;
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of dispatch events in memory-mapped segment files. Appending is a copy into the
+ * mapped segment plus, under FsyncPolicy.EVERY_APPEND, an msync of the touched pages, so an event
+ * is durable in microseconds instead of a database round trip. EventProjector applies the log to
+ * the tables in the background.
+ *
+ * Segments are preallocated files named by the sequence of their first event. Each record is
+ *
+ *   [int length][int crc32][long sequence][byte type][payload]
+ *
+ * where length and crc cover everything after the header. Unwritten space is zeros, so a zero
+ * length ends a segment. On open the last segment is scanned and anything after the last record
+ * with a valid checksum (a write torn by a crash) is zeroed before appending resumes.
+ */
+public class EventLog implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int HEADER_BYTES = 8;
+    private static final byte DISPATCHED = 1;
+    private static final byte INVENTORY_CHANGED = 2;
+    private static final byte RESOLVED = 3;
+    // DISPATCHED plus the decision time; DISPATCHED records are still read from older segments.
+    private static final byte DISPATCHED_AT = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService syncer;
+    // Used only by recovery and under the append lock.
+    private final CRC32 crc = new CRC32();
+
+    // Guarded by this.
+    private Segment active;
+    private long nextSequence;
+    private boolean closed;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+
+    public EventLog(Path directory, int segmentBytes, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+
+        Files.createDirectories(directory);
+        recover();
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "event-log-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleAtFixedRate(this::sync, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+
+        MetricsRegistry.gauge("event_log_appended_total", appended::get);
+        MetricsRegistry.gauge("event_log_fsyncs_total", fsyncs::get);
+        MetricsRegistry.gauge("event_log_segments", segments::size);
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+
+        nextSequence = 1;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            long firstSequence = Long.parseLong(file.getFileName().toString().replace(".log", ""));
+            Segment segment = Segment.open(file, firstSequence, segmentBytes);
+            long last = scan(segment);
+            boolean isLast = i == files.size() - 1;
+            if (!isLast) {
+                segment.sealed = true;
+            } else if (segment.limit < segment.buffer.capacity()) {
+                zeroTail(segment);
+            }
+            segments.put(firstSequence, segment);
+            nextSequence = Math.max(last + 1, firstSequence);
+        }
+
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (active == null || active.sealed) {
+            active = newSegment(nextSequence);
+        }
+        logger.info("Opened event log {} at sequence {} ({} segments)", directory, nextSequence, segments.size());
+    }
+
+    // Sets segment.limit to the end of the last valid record and returns that record's sequence.
+    private long scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        long last = segment.firstSequence - 1;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - HEADER_BYTES) {
+                break;
+            }
+            int checksum = buffer.getInt(position + 4);
+            if (checksum != checksum(buffer, position + HEADER_BYTES, length)) {
+                logger.warn("Discarding torn event log record at {}:{}", segment.path, position);
+                break;
+            }
+            last = buffer.getLong(position + HEADER_BYTES);
+            position += HEADER_BYTES + length;
+        }
+        segment.limit = position;
+        return last;
+    }
+
+    private static void zeroTail(Segment segment) {
+        byte[] zeros = new byte[64 * 1024];
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(segment.limit);
+        while (buffer.hasRemaining()) {
+            buffer.put(zeros, 0, Math.min(zeros.length, buffer.remaining()));
+        }
+        segment.buffer.force();
+    }
+
+    private Segment newSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d.log", firstSequence));
+        Segment segment = Segment.open(file, firstSequence, segmentBytes);
+        if (fsyncPolicy == FsyncPolicy.EVERY_APPEND) {
+            // msync covers the pages, not the file's size or its directory entry.
+            segment.channel.force(true);
+            try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+            fsyncs.incrementAndGet();
+        }
+        segments.put(firstSequence, segment);
+        return segment;
+    }
+
+    public long append(DispatchEvent event) {
+        return appendAll(List.of(event));
+    }
+
+    /**
+     * Appends the events in order and returns the sequence of the last one. Under EVERY_APPEND the
+     * whole batch is forced with one msync per segment touched.
+     */
+    public synchronized long appendAll(List<? extends DispatchEvent> events) {
+        if (closed) {
+            throw new IllegalStateException("Event log is closed");
+        }
+        try {
+            int synced = active.limit;
+            for (DispatchEvent event : events) {
+                byte[] payload = encode(event);
+                int length = 8 + 1 + payload.length;
+                if (HEADER_BYTES + length > segmentBytes) {
+                    throw new IllegalArgumentException("Event of " + length + " bytes does not fit a segment");
+                }
+                if (active.limit + HEADER_BYTES + length > active.buffer.capacity()) {
+                    force(active, synced);
+                    roll();
+                    synced = 0;
+                }
+                write(active, nextSequence, event, payload, length);
+                nextSequence++;
+            }
+            if (fsyncPolicy == FsyncPolicy.EVERY_APPEND) {
+                force(active, synced);
+            }
+            appended.addAndGet(events.size());
+            return nextSequence - 1;
+        } catch (IOException e) {
+            logger.error("Error appending {} dispatch events to {}", events.size(), directory, e);
+            throw new RuntimeException("Failed to append dispatch events: " + e.getMessage(), e);
+        }
+    }
+
+    private void write(Segment segment, long sequence, DispatchEvent event, byte[] payload, int length) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.limit;
+        int body = position + HEADER_BYTES;
+        buffer.putLong(body, sequence);
+        buffer.put(body + 8, type(event));
+        buffer.put(body + 9, payload);
+        buffer.putInt(position + 4, checksum(buffer, body, length));
+        // Length last: a reader or a recovery scan never sees a record before its body is complete.
+        buffer.putInt(position, length);
+        segment.limit = body + length;
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private void roll() throws IOException {
+        Segment sealed = active;
+        if (fsyncPolicy != FsyncPolicy.EVERY_APPEND) {
+            sealed.buffer.force();
+            fsyncs.incrementAndGet();
+        }
+        active = newSegment(nextSequence);
+        sealed.sealed = true;
+        logger.debug("Rolled event log to segment starting at {}", nextSequence);
+    }
+
+    private void force(Segment segment, int from) {
+        if (fsyncPolicy != FsyncPolicy.EVERY_APPEND || segment.limit == from) {
+            return;
+        }
+        segment.buffer.force(from, segment.limit - from);
+        fsyncs.incrementAndGet();
+    }
+
+    private synchronized void sync() {
+        if (closed) {
+            return;
+        }
+        try {
+            active.buffer.force();
+            fsyncs.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.error("Error forcing event log segment {}", active.path, e);
+        }
+    }
+
+    /**
+     * Deletes sealed segments whose events all have sequences below the given one, i.e. that the
+     * projector has fully applied.
+     */
+    public void deleteBefore(long sequence) {
+        while (true) {
+            Map.Entry<Long, Segment> first = segments.firstEntry();
+            Map.Entry<Long, Segment> second = first == null ? null : segments.higherEntry(first.getKey());
+            if (second == null || second.getKey() > sequence || !first.getValue().sealed) {
+                return;
+            }
+            Segment segment = first.getValue();
+            segments.remove(first.getKey());
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.error("Error deleting event log segment {}", segment.path, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the next sequence up to at least the given one. A crash can lose unsynced records the
+     * projector had already applied; without this, recovery would hand their sequences to new
+     * events and the projector, resuming after its checkpoint, would skip them.
+     */
+    public synchronized void skipTo(long sequence) {
+        if (sequence > nextSequence) {
+            logger.warn("Event log recovered at sequence {} behind the projector, continuing from {}",
+                    nextSequence, sequence);
+            nextSequence = sequence;
+        }
+    }
+
+    public Reader reader(long fromSequence) {
+        return new Reader(fromSequence);
+    }
+
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    public long getAppended() { return appended.get(); }
+    public long getFsyncs() { return fsyncs.get(); }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        active.buffer.force();
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.error("Error closing event log segment {}", segment.path, e);
+            }
+        }
+    }
+
+    private static byte type(DispatchEvent event) {
+        return switch (event) {
+            case Dispatched d -> DISPATCHED_AT;
+            case InventoryChanged c -> INVENTORY_CHANGED;
+            case Resolved r -> RESOLVED;
+        };
+    }
+
+    private static byte[] encode(DispatchEvent event) {
+        switch (event) {
+            case Dispatched d -> {
+                Dispatch dispatch = d.dispatch();
+                byte[][] strings = {
+                        utf8(dispatch.getSourceCity()), utf8(dispatch.getSourceCounty()),
+                        utf8(dispatch.getTargetCity()), utf8(dispatch.getTargetCounty())};
+                int size = 4 + 8;
+                for (byte[] s : strings) {
+                    size += 4 + s.length;
+                }
+                ByteBuffer out = ByteBuffer.allocate(size);
+                for (byte[] s : strings) {
+                    out.putInt(s.length).put(s);
+                }
+                return out.putInt(dispatch.getQuantity()).putLong(dispatch.getTimestamp().getTime()).array();
+            }
+            case InventoryChanged c -> {
+                return ByteBuffer.allocate(8).putInt(c.stationId()).putInt(c.delta()).array();
+            }
+            case Resolved r -> {
+                return ByteBuffer.allocate(4).putInt(r.emergencyId()).array();
+            }
+        }
+    }
+
+    private static DispatchEvent decode(byte type, ByteBuffer in) {
+        return switch (type) {
+            case DISPATCHED -> new Dispatched(new Dispatch(string(in), string(in), string(in), string(in), in.getInt()));
+            case DISPATCHED_AT -> {
+                Dispatch dispatch = new Dispatch(string(in), string(in), string(in), string(in), in.getInt());
+                dispatch.setTimestamp(new Timestamp(in.getLong()));
+                yield new Dispatched(dispatch);
+            }
+            case INVENTORY_CHANGED -> new InventoryChanged(in.getInt(), in.getInt());
+            case RESOLVED -> new Resolved(in.getInt());
+            default -> throw new IllegalStateException("Unknown dispatch event type " + type);
+        };
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Single-consumer cursor over the log. It reads the mapped segments directly, without taking
+     * the append lock, up to the last completely written record.
+     */
+    public final class Reader {
+        private Segment segment;
+        private int position;
+        private long nextSequence;
+
+        private Reader(long fromSequence) {
+            this.nextSequence = fromSequence;
+            Map.Entry<Long, Segment> entry = segments.floorEntry(fromSequence);
+            this.segment = entry != null ? entry.getValue() : segments.firstEntry().getValue();
+        }
+
+        // Returns up to max events in sequence order; empty when the reader has caught up.
+        public List<DispatchEvent> poll(int max) {
+            List<DispatchEvent> events = new ArrayList<>(Math.min(max, 1024));
+            while (events.size() < max) {
+                // sealed is published after the final limit, so read it first.
+                boolean sealed = segment.sealed;
+                int limit = segment.limit;
+                if (position + HEADER_BYTES > limit) {
+                    Map.Entry<Long, Segment> next = segments.higherEntry(segment.firstSequence);
+                    if (!sealed || next == null) {
+                        break;
+                    }
+                    segment = next.getValue();
+                    position = 0;
+                    continue;
+                }
+                ByteBuffer buffer = segment.buffer.duplicate();
+                int length = buffer.getInt(position);
+                long sequence = buffer.getLong(position + HEADER_BYTES);
+                if (sequence >= nextSequence) {
+                    ByteBuffer payload = buffer.slice(position + HEADER_BYTES + 9, length - 9);
+                    events.add(decode(buffer.get(position + HEADER_BYTES + 8), payload));
+                    nextSequence = sequence + 1;
+                }
+                position += HEADER_BYTES + length;
+            }
+            return events;
+        }
+
+        // Sequence of the next event poll will return.
+        public long getNextSequence() {
+            return nextSequence;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long firstSequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // End of the last complete record; written only by the appender.
+        private volatile int limit;
+        private volatile boolean sealed;
+
+        private Segment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment open(Path path, long firstSequence, int segmentBytes) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                int size = (int) Math.max(channel.size(), segmentBytes);
+                return new Segment(path, firstSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+}
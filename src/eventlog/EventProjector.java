@@ -0,0 +1,252 @@
+package eventlog;
+
+import domain.Dispatch;
+import eventlog.DispatchEvent.Dispatched;
+import eventlog.DispatchEvent.InventoryChanged;
+import eventlog.DispatchEvent.Resolved;
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.JdbcUtils;
+import repository.RepositoryAmbulances;
+import repository.RepositoryCheckpoint;
+import repository.RepositoryDispatch;
+import repository.RepositoryEmergency;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Materialises the EventLog into the database. A single background thread reads up to batchSize
+ * events and applies them grouped by table: one saveAll for the dispatches, one net quantity update
+ * per station, one markResolved for the emergencies. The sequence of the last applied event is
+ * saved to the checkpoints table in the same transaction, and segments below it are deleted.
+ *
+ * Because a batch and its checkpoint commit together, a failed batch is rolled back and retried
+ * whole, and a restart resumes after exactly the last committed batch: nothing is applied twice.
+ * Station listeners are told about quantity changes only once the batch has committed.
+ *
+ * A batch that fails MAX_ATTEMPTS times in a row is split and its events retried one at a time, so
+ * one bad event cannot hold the rest back. An event that still fails alone is skipped: it is
+ * logged with its sequence, counted as dead-lettered, and the checkpoint moves past it. If even
+ * that checkpoint cannot be written the database itself is down, and the event is retried.
+ */
+public class EventProjector implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final String CHECKPOINT = "event-projector";
+    static final int MAX_ATTEMPTS = 5;
+
+    private final EventLog log;
+    private final JdbcUtils jdbcUtils;
+    private final RepositoryDispatch repositoryDispatch;
+    private final RepositoryAmbulances repositoryAmbulances;
+    private final RepositoryEmergency repositoryEmergency;
+    private final RepositoryCheckpoint repositoryCheckpoint;
+    private final int batchSize;
+    private final long intervalNanos;
+    private final EventLog.Reader reader;
+    private final Thread projector;
+    private volatile boolean running = true;
+
+    private volatile long checkpoint;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejectedDecrements = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    // The repositories must write to the database jdbcUtils points at, so they join its transactions.
+    public EventProjector(EventLog log, JdbcUtils jdbcUtils, RepositoryDispatch repositoryDispatch,
+                          RepositoryAmbulances repositoryAmbulances, RepositoryEmergency repositoryEmergency,
+                          int batchSize, long intervalMillis) {
+        this.log = log;
+        this.jdbcUtils = jdbcUtils;
+        this.repositoryDispatch = repositoryDispatch;
+        this.repositoryAmbulances = repositoryAmbulances;
+        this.repositoryEmergency = repositoryEmergency;
+        this.repositoryCheckpoint = new RepositoryCheckpoint(jdbcUtils);
+        this.batchSize = batchSize;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+
+        this.checkpoint = repositoryCheckpoint.findById(CHECKPOINT).orElse(0);
+        log.skipTo(checkpoint + 1);
+        this.reader = log.reader(checkpoint + 1);
+        logger.info("Projecting event log from sequence {}", checkpoint + 1);
+
+        MetricsRegistry.gauge("event_projector_applied_total", applied::get);
+        MetricsRegistry.gauge("event_projector_failures_total", failures::get);
+        MetricsRegistry.gauge("event_projector_rejected_decrements_total", rejectedDecrements::get);
+        MetricsRegistry.gauge("event_projector_dead_lettered_total", deadLettered::get);
+        MetricsRegistry.gauge("event_projector_lag", this::getLag);
+
+        this.projector = new Thread(this::run, "event-log-projector");
+        this.projector.setDaemon(true);
+        this.projector.start();
+    }
+
+    private void run() {
+        // Batches read but not yet applied, oldest first; a batch that keeps failing is split here.
+        Deque<Batch> pending = new ArrayDeque<>();
+        int attempts = 0;
+        while (running) {
+            if (pending.isEmpty()) {
+                Batch batch = next();
+                if (batch == null) {
+                    LockSupport.parkNanos(this, intervalNanos);
+                    continue;
+                }
+                pending.add(batch);
+            }
+            Batch batch = pending.peek();
+            if (apply(batch, ++attempts)) {
+                pending.poll();
+                attempts = 0;
+            } else if (attempts >= MAX_ATTEMPTS) {
+                attempts = 0;
+                if (batch.size > 1) {
+                    pending.poll();
+                    List<Batch> events = batch.split();
+                    for (int i = events.size() - 1; i >= 0; i--) {
+                        pending.push(events.get(i));
+                    }
+                } else if (skip(batch)) {
+                    pending.poll();
+                }
+            } else {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+        }
+
+        // Drain what was appended before close(); give up on the first failure, the log keeps it.
+        Batch batch = !pending.isEmpty() ? pending.poll() : next();
+        while (batch != null && apply(batch, 1)) {
+            batch = !pending.isEmpty() ? pending.poll() : next();
+        }
+    }
+
+    private Batch next() {
+        List<DispatchEvent> events = reader.poll(batchSize);
+        return events.isEmpty() ? null : new Batch(events, reader.getNextSequence() - events.size());
+    }
+
+    private boolean apply(Batch batch, int attempt) {
+        int rejected;
+        try {
+            rejected = jdbcUtils.inTransaction(conn -> {
+                if (!batch.dispatches.isEmpty()) {
+                    repositoryDispatch.saveAll(batch.dispatches);
+                }
+                int skipped = 0;
+                for (Map.Entry<Integer, Integer> change : batch.inventory.entrySet()) {
+                    if (!applyInventory(change.getKey(), change.getValue())) {
+                        skipped++;
+                    }
+                }
+                if (!batch.resolved.isEmpty()) {
+                    repositoryEmergency.markResolved(batch.resolved);
+                }
+                repositoryCheckpoint.save(CHECKPOINT, batch.lastSequence);
+                return skipped;
+            });
+        } catch (SQLException | RuntimeException e) {
+            failures.incrementAndGet();
+            logger.error("Error projecting dispatch events {} to {} (attempt {} of {})",
+                    batch.firstSequence, batch.lastSequence, attempt, MAX_ATTEMPTS, e);
+            return false;
+        }
+
+        checkpoint = batch.lastSequence;
+        applied.addAndGet(batch.size);
+        rejectedDecrements.addAndGet(rejected);
+        log.deleteBefore(batch.lastSequence + 1);
+        return true;
+    }
+
+    // Moves the checkpoint past a single event that could not be applied; false if even that fails.
+    private boolean skip(Batch batch) {
+        try {
+            repositoryCheckpoint.save(CHECKPOINT, batch.lastSequence);
+        } catch (RuntimeException e) {
+            logger.error("Error checkpointing past dispatch event {}, will retry it", batch.lastSequence, e);
+            return false;
+        }
+        deadLettered.incrementAndGet();
+        logger.error("Skipped dispatch event {} after {} failed attempts: {}", batch.lastSequence, MAX_ATTEMPTS, batch.events.get(0));
+        checkpoint = batch.lastSequence;
+        log.deleteBefore(batch.lastSequence + 1);
+        return true;
+    }
+
+    // False when a decrement was skipped because the station no longer has the units.
+    private boolean applyInventory(int stationId, int delta) {
+        if (delta > 0) {
+            repositoryAmbulances.incrementQuantity(stationId, delta);
+        } else if (delta < 0 && !repositoryAmbulances.decrementQuantity(stationId, -delta)) {
+            logger.warn("Station {} no longer has {} units to take, skipping projected decrement", stationId, -delta);
+            return false;
+        }
+        return true;
+    }
+
+    public long getCheckpoint() { return checkpoint; }
+    public long getLag() { return log.getLastSequence() - checkpoint; }
+    public long getApplied() { return applied.get(); }
+    public long getFailures() { return failures.get(); }
+    public long getRejectedDecrements() { return rejectedDecrements.get(); }
+    public long getDeadLettered() { return deadLettered.get(); }
+
+    // Stops the projector after applying everything appended so far.
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(projector);
+        try {
+            projector.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while draining event projector, {} events behind", getLag());
+        }
+    }
+
+    private static final class Batch {
+        private final List<DispatchEvent> events;
+        private final List<Dispatch> dispatches = new ArrayList<>();
+        // Net change per station; the order stations first appeared in.
+        private final Map<Integer, Integer> inventory = new LinkedHashMap<>();
+        private final List<Integer> resolved = new ArrayList<>();
+        private final int size;
+        private final long firstSequence;
+        private final long lastSequence;
+
+        // Events carry consecutive sequences starting at firstSequence.
+        private Batch(List<DispatchEvent> events, long firstSequence) {
+            this.events = events;
+            for (DispatchEvent event : events) {
+                switch (event) {
+                    case Dispatched d -> dispatches.add(d.dispatch());
+                    case InventoryChanged c -> inventory.merge(c.stationId(), c.delta(), Integer::sum);
+                    case Resolved r -> resolved.add(r.emergencyId());
+                }
+            }
+            this.size = events.size();
+            this.firstSequence = firstSequence;
+            this.lastSequence = firstSequence + size - 1;
+        }
+
+        private List<Batch> split() {
+            List<Batch> single = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                single.add(new Batch(List.of(events.get(i)), firstSequence + i));
+            }
+            return single;
+        }
+    }
+}
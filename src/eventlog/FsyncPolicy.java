@@ -0,0 +1,10 @@
+package eventlog;
+
+public enum FsyncPolicy {
+    // Force the appended bytes to disk before append returns; an acknowledged event survives power loss.
+    EVERY_APPEND,
+    // Force on a fixed interval from a background thread; a crash loses at most one interval.
+    INTERVAL,
+    // Leave write-back to the OS (and to segment rolls and close); survives a process crash only.
+    OS
+}
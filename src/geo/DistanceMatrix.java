@@ -0,0 +1,277 @@
+package geo;
+
+import domain.Location;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryLocation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Pairwise haversine distances between locations, stored row-major in one flat double[] and
+ * addressed by dense integer ids assigned in load order. Adding or moving a location only
+ * recomputes its own row and column.
+ */
+public class DistanceMatrix {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int MAGIC = 0x44535432; // "DST2"
+    private static final int HEADER_BYTES = 12;
+    // Largest side whose capacity x capacity cells still fit in one Java array.
+    static final int MAX_CAPACITY = 46340;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] distances;
+    private int capacity;
+    private int size;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public DistanceMatrix(int initialCapacity) {
+        if (initialCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Distance matrix capacity " + initialCapacity + " exceeds " + MAX_CAPACITY);
+        }
+        this.capacity = Math.max(1, initialCapacity);
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.distances = new double[capacity * capacity];
+    }
+
+    public static DistanceMatrix load(RepositoryLocation repository) {
+        List<Location> locations = repository.findAll();
+        DistanceMatrix matrix = new DistanceMatrix(locations.size());
+        locations.forEach(matrix::put);
+        logger.info("Computed distance matrix for {} locations", matrix.size());
+        return matrix;
+    }
+
+    /**
+     * Restores the matrix from a file written by persist() and reconciles it with the current
+     * locations table: unchanged locations keep their stored rows, new or moved ones are patched in.
+     */
+    public static DistanceMatrix load(RepositoryLocation repository, Path file) {
+        if (!Files.exists(file)) {
+            return load(repository);
+        }
+
+        DistanceMatrix matrix;
+        try {
+            matrix = read(file);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error reading distance matrix from {}, recomputing", file, e);
+            return load(repository);
+        }
+
+        int restored = matrix.size();
+        repository.forEach(matrix::put);
+        logger.info("Restored {} locations from {}, {} total after reconciling", restored, file, matrix.size());
+        return matrix;
+    }
+
+    // Adds a location or, if its coordinates changed, refreshes its row and column.
+    public int put(Location location) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ids.get(location.getName());
+            int id;
+            if (existing != null) {
+                id = existing;
+                if (latitudes[id] == location.getLatitude() && longitudes[id] == location.getLongitude()) {
+                    return id;
+                }
+            } else {
+                if (size == capacity) {
+                    if (capacity == MAX_CAPACITY) {
+                        throw new IllegalStateException("Distance matrix is full at " + MAX_CAPACITY + " locations");
+                    }
+                    grow((int) Math.min(2L * capacity, MAX_CAPACITY));
+                }
+                id = size++;
+                ids.put(location.getName(), id);
+                names.add(location.getName());
+            }
+
+            latitudes[id] = location.getLatitude();
+            longitudes[id] = location.getLongitude();
+            for (int other = 0; other < size; other++) {
+                double d = other == id ? 0 : GeoUtils.haversineKm(latitudes[id], longitudes[id], latitudes[other], longitudes[other]);
+                distances[id * capacity + other] = d;
+                distances[other * capacity + id] = d;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void grow(int newCapacity) {
+        double[] grown = new double[newCapacity * newCapacity];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(distances, row * capacity, grown, row * newCapacity, size);
+        }
+        distances = grown;
+        latitudes = Arrays.copyOf(latitudes, newCapacity);
+        longitudes = Arrays.copyOf(longitudes, newCapacity);
+        capacity = newCapacity;
+    }
+
+    public double distance(int from, int to) {
+        lock.readLock().lock();
+        try {
+            return distances[from * capacity + to];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double distance(String from, String to) {
+        return distance(idOf(from), idOf(to));
+    }
+
+    // Copies one row into the caller's buffer so hot loops can scan it without locking.
+    public void copyRow(int from, double[] target) {
+        lock.readLock().lock();
+        try {
+            System.arraycopy(distances, from * capacity, target, 0, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int idOf(String name) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(name);
+            if (id == null) {
+                throw new IllegalArgumentException("Unknown location: " + name);
+            }
+            return id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String nameOf(int id) {
+        lock.readLock().lock();
+        try {
+            return names.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the matrix to a memory-mapped file: a header of magic, size and a CRC32 of the rest,
+     * each location's name and coordinates, then the size x size distances.
+     *
+     * The file is filled and forced under a temporary name and then moved over the old one, so a
+     * crash leaves either the previous matrix or the new one, never a partly written file.
+     */
+    public void persist(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            byte[][] encodedNames = new byte[size][];
+            long totalBytes = HEADER_BYTES;
+            for (int i = 0; i < size; i++) {
+                encodedNames[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+                totalBytes += 4 + encodedNames[i].length + 16;
+            }
+            totalBytes += (long) size * size * Double.BYTES;
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalBytes);
+                buffer.position(HEADER_BYTES);
+                for (int i = 0; i < size; i++) {
+                    buffer.putInt(encodedNames[i].length).put(encodedNames[i]);
+                    buffer.putDouble(latitudes[i]).putDouble(longitudes[i]);
+                }
+                DoubleBuffer matrix = buffer.asDoubleBuffer();
+                for (int row = 0; row < size; row++) {
+                    matrix.put(distances, row * capacity, size);
+                }
+                buffer.putInt(0, MAGIC).putInt(4, size).putInt(8, checksum(buffer));
+                buffer.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+
+    // CRC32 of everything after the header.
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static DistanceMatrix read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Truncated distance matrix file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a distance matrix file: " + file);
+            }
+            int n = buffer.getInt();
+            if (n < 0 || n > MAX_CAPACITY) {
+                throw new IOException("Invalid distance matrix size " + n + " in " + file);
+            }
+            if (buffer.getInt() != checksum(buffer)) {
+                throw new IOException("Checksum mismatch in distance matrix file: " + file);
+            }
+            DistanceMatrix matrix = new DistanceMatrix(n);
+            for (int i = 0; i < n; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                String decoded = new String(name, StandardCharsets.UTF_8);
+                matrix.ids.put(decoded, i);
+                matrix.names.add(decoded);
+                matrix.latitudes[i] = buffer.getDouble();
+                matrix.longitudes[i] = buffer.getDouble();
+            }
+            ByteBuffer rest = buffer.slice();
+            rest.asDoubleBuffer().get(matrix.distances, 0, n * n);
+            matrix.size = n;
+            return matrix;
+        }
+    }
+}
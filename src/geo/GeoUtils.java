@@ -0,0 +1,23 @@
+package geo;
+
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    public static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private GeoUtils() {}
+
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // Width of one degree of longitude at the given latitude, never below a small floor near the poles.
+    public static double kmPerDegreeLon(double latitude) {
+        return Math.max(0.01, KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude)))));
+    }
+}
@@ -0,0 +1,290 @@
+package geo;
+
+import domain.Ambulances;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.AmbulancesListener;
+import repository.RepositoryAmbulances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Uniform lat/lon grid over ambulance stations. Only stations with at least one unit are placed
+ * in the grid, so nearest/radius queries never return empty stations. Kept current through
+ * RepositoryAmbulances listener callbacks.
+ */
+public class StationIndex implements AmbulancesListener {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final double cellDegrees;
+    private final Map<Integer, Station> stations = new HashMap<>();
+    private final Map<Long, List<Station>> cells = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Bounding box of every cell that has ever held a station; bounds the k-nearest ring search.
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxCol = Integer.MIN_VALUE;
+    private int indexed;
+
+    public StationIndex(double cellDegrees) {
+        if (cellDegrees <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    public static StationIndex load(RepositoryAmbulances repository, double cellDegrees) {
+        StationIndex index = new StationIndex(cellDegrees);
+        repository.addListener(index);
+        repository.forEach(index::onSaved);
+        logger.info("Indexed {} stations with units available", index.size());
+        return index;
+    }
+
+    @Override
+    public void onSaved(Ambulances ambulance) {
+        lock.writeLock().lock();
+        try {
+            Station station = stations.computeIfAbsent(ambulance.getId(), Station::new);
+            unindex(station);
+            station.latitude = ambulance.getLatitude();
+            station.longitude = ambulance.getLongitude();
+            station.quantity = ambulance.getQuantity();
+            if (station.quantity > 0) {
+                index(station);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onDeleted(int id) {
+        lock.writeLock().lock();
+        try {
+            Station station = stations.remove(id);
+            if (station != null) {
+                unindex(station);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onQuantityChanged(int id, int delta) {
+        lock.writeLock().lock();
+        try {
+            Station station = stations.get(id);
+            if (station != null) {
+                setQuantity(station, station.quantity + delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateQuantity(int id, int quantity) {
+        lock.writeLock().lock();
+        try {
+            Station station = stations.get(id);
+            if (station != null) {
+                setQuantity(station, quantity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setQuantity(Station station, int quantity) {
+        station.quantity = quantity;
+        if (quantity > 0 && !station.indexed) {
+            index(station);
+        } else if (quantity <= 0) {
+            unindex(station);
+        }
+    }
+
+    private void index(Station station) {
+        int row = row(station.latitude);
+        int col = col(station.longitude);
+        station.cell = key(row, col);
+        station.indexed = true;
+        cells.computeIfAbsent(station.cell, k -> new ArrayList<>()).add(station);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+        indexed++;
+    }
+
+    private void unindex(Station station) {
+        if (!station.indexed) {
+            return;
+        }
+        List<Station> cell = cells.get(station.cell);
+        cell.remove(station);
+        if (cell.isEmpty()) {
+            cells.remove(station.cell);
+        }
+        station.indexed = false;
+        indexed--;
+    }
+
+    /**
+     * Ids of the k stations with units closest to the point, nearest first. Rings of cells are
+     * scanned outwards until no unvisited cell can hold anything closer than the current k-th.
+     */
+    public int[] nearest(double latitude, double longitude, int k) {
+        if (k <= 0) {
+            return new int[0];
+        }
+
+        int[] ids = new int[k];
+        double[] distances = new double[k];
+        int found = 0;
+
+        lock.readLock().lock();
+        try {
+            if (indexed == 0) {
+                return new int[0];
+            }
+            int row = row(latitude);
+            int col = col(longitude);
+            int maxRing = Math.max(Math.max(row - minRow, maxRow - row), Math.max(col - minCol, maxCol - col));
+
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int r = row - ring; r <= row + ring; r++) {
+                    boolean edgeRow = r == row - ring || r == row + ring;
+                    int step = edgeRow ? 1 : 2 * ring;
+                    for (int c = col - ring; c <= col + ring; c += Math.max(1, step)) {
+                        List<Station> cell = cells.get(key(r, c));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (Station station : cell) {
+                            double d = GeoUtils.haversineKm(latitude, longitude, station.latitude, station.longitude);
+                            found = insert(ids, distances, found, station.id, d);
+                        }
+                    }
+                }
+                if (found == k && distances[k - 1] <= ringLowerBoundKm(latitude, ring)) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return found == k ? ids : Arrays.copyOf(ids, found);
+    }
+
+    // Anything outside ring r is at least r whole cells away from the query point along one axis.
+    private double ringLowerBoundKm(double latitude, int ring) {
+        double farthestLatitude = Math.abs(latitude) + (ring + 1) * cellDegrees;
+        return ring * cellDegrees * Math.min(GeoUtils.KM_PER_DEGREE_LAT, GeoUtils.kmPerDegreeLon(farthestLatitude));
+    }
+
+    private static int insert(int[] ids, double[] distances, int size, int id, double distance) {
+        int k = ids.length;
+        if (size == k && distance >= distances[k - 1]) {
+            return size;
+        }
+        int i = size == k ? k - 1 : size;
+        while (i > 0 && distances[i - 1] > distance) {
+            ids[i] = ids[i - 1];
+            distances[i] = distances[i - 1];
+            i--;
+        }
+        ids[i] = id;
+        distances[i] = distance;
+        return size == k ? k : size + 1;
+    }
+
+    // Ids of every station with units within radiusKm of the point, nearest first.
+    public int[] withinRadius(double latitude, double longitude, double radiusKm) {
+        double dLat = radiusKm / GeoUtils.KM_PER_DEGREE_LAT;
+        double dLon = radiusKm / GeoUtils.kmPerDegreeLon(Math.abs(latitude) + dLat);
+        List<double[]> hits = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            for (int r = row(latitude - dLat); r <= row(latitude + dLat); r++) {
+                for (int c = col(longitude - dLon); c <= col(longitude + dLon); c++) {
+                    List<Station> cell = cells.get(key(r, c));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Station station : cell) {
+                        double d = GeoUtils.haversineKm(latitude, longitude, station.latitude, station.longitude);
+                        if (d <= radiusKm) {
+                            hits.add(new double[]{d, station.id});
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort(Comparator.comparingDouble(hit -> hit[0]));
+        int[] ids = new int[hits.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) hits.get(i)[1];
+        }
+        return ids;
+    }
+
+    public int getQuantity(int id) {
+        lock.readLock().lock();
+        try {
+            Station station = stations.get(id);
+            return station == null ? 0 : station.quantity;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int col(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private static final class Station {
+        private final int id;
+        private double latitude;
+        private double longitude;
+        private int quantity;
+        private long cell;
+        private boolean indexed;
+
+        private Station(int id) {
+            this.id = id;
+        }
+    }
+}
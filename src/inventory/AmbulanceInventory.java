@@ -0,0 +1,180 @@
+package inventory;
+
+import domain.Ambulances;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.AmbulancesListener;
+import repository.RepositoryAmbulances;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory per-station unit counts that dispatch threads reserve from with CAS. A reservation is
+ * made durable with a conditional decrement in the database; if that row update does not apply,
+ * the in-memory reservation is rolled back, so concurrent dispatchers can never take the same unit.
+ *
+ * Quantity changes made through the repository by anyone else, e.g. the EventProjector, reach the
+ * counts through onQuantityChanged. The notifications for this inventory's own reserve and release
+ * are recognised and not applied twice; those two are meant to run outside a caller's transaction,
+ * since a notification is only delivered once the change commits.
+ */
+public class AmbulanceInventory implements AmbulancesListener {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int RESTOCK_ATTEMPTS = 3;
+
+    private final RepositoryAmbulances repository;
+    private final Map<Integer, AtomicInteger> available = new ConcurrentHashMap<>();
+    // Quantity changes made by reserve/release whose listener notification has not arrived yet,
+    // counted per (station, delta).
+    private final Map<Long, Integer> expected = new ConcurrentHashMap<>();
+
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+
+    public AmbulanceInventory(RepositoryAmbulances repository) {
+        this.repository = repository;
+        repository.addListener(this);
+        repository.forEach(this::onSaved);
+    }
+
+    public boolean reserve(int stationId, int units) {
+        AtomicInteger counter = available.get(stationId);
+        if (counter == null || units <= 0) {
+            rejected.increment();
+            return false;
+        }
+
+        int current;
+        while (true) {
+            current = counter.get();
+            if (current < units) {
+                rejected.increment();
+                return false;
+            }
+            if (counter.compareAndSet(current, current - units)) {
+                break;
+            }
+            casRetries.increment();
+        }
+
+        boolean persisted;
+        expect(stationId, -units);
+        try {
+            persisted = repository.decrementQuantity(stationId, units);
+        } catch (RuntimeException e) {
+            unexpect(stationId, -units);
+            counter.addAndGet(units);
+            rollbacks.increment();
+            throw e;
+        }
+        if (!persisted) {
+            // The row changed under us (e.g. a blind update elsewhere); give the units back.
+            unexpect(stationId, -units);
+            counter.addAndGet(units);
+            rollbacks.increment();
+            logger.warn("Conditional decrement of {} units at station {} did not apply, rolled back", units, stationId);
+            return false;
+        }
+
+        reservations.increment();
+        return true;
+    }
+
+    public boolean release(int stationId, int units) {
+        if (units <= 0) {
+            return false;
+        }
+        boolean persisted;
+        expect(stationId, units);
+        try {
+            persisted = repository.incrementQuantity(stationId, units);
+        } catch (RuntimeException e) {
+            unexpect(stationId, units);
+            throw e;
+        }
+        if (!persisted) {
+            unexpect(stationId, units);
+            return false;
+        }
+        available.computeIfAbsent(stationId, id -> new AtomicInteger()).addAndGet(units);
+        return true;
+    }
+
+    /**
+     * Brings a station to the given number of available units by reserving or releasing the
+     * difference, so a report never overwrites units taken concurrently. Retries a few times if
+     * dispatchers keep moving the count; false if the station is unknown or it never settled.
+     */
+    public boolean restock(int stationId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        for (int attempt = 0; attempt < RESTOCK_ATTEMPTS; attempt++) {
+            AtomicInteger counter = available.get(stationId);
+            if (counter == null) {
+                return false;
+            }
+            int delta = quantity - counter.get();
+            if (delta == 0 || (delta > 0 ? release(stationId, delta) : reserve(stationId, -delta))) {
+                return true;
+            }
+        }
+        logger.warn("Could not bring station {} to {} units, its count kept changing", stationId, quantity);
+        return false;
+    }
+
+    public int getAvailable(int stationId) {
+        AtomicInteger counter = available.get(stationId);
+        return counter == null ? 0 : counter.get();
+    }
+
+    @Override
+    public void onSaved(Ambulances ambulance) {
+        available.computeIfAbsent(ambulance.getId(), id -> new AtomicInteger()).set(ambulance.getQuantity());
+    }
+
+    @Override
+    public void onDeleted(int id) {
+        available.remove(id);
+    }
+
+    @Override
+    public void onQuantityChanged(int id, int delta) {
+        if (unexpect(id, delta)) {
+            return;
+        }
+        AtomicInteger counter = available.get(id);
+        if (counter != null) {
+            counter.addAndGet(delta);
+        }
+    }
+
+    private void expect(int stationId, int delta) {
+        expected.merge(key(stationId, delta), 1, Integer::sum);
+    }
+
+    // True if a change by reserve/release was waiting for this notification; it is consumed.
+    private boolean unexpect(int stationId, int delta) {
+        boolean[] found = {false};
+        expected.computeIfPresent(key(stationId, delta), (key, count) -> {
+            found[0] = true;
+            return count == 1 ? null : count - 1;
+        });
+        return found[0];
+    }
+
+    private static long key(int stationId, int delta) {
+        return ((long) stationId << 32) | (delta & 0xFFFFFFFFL);
+    }
+
+    public long getReservations() { return reservations.sum(); }
+    public long getCasRetries() { return casRetries.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public long getRollbacks() { return rollbacks.sum(); }
+}
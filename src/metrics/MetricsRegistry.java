@@ -0,0 +1,79 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+public final class MetricsRegistry {
+
+    private static final Map<String, RepositoryMetrics> repositories = new ConcurrentSkipListMap<>();
+    private static final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {}
+
+    public static RepositoryMetrics repository(String name) {
+        return repositories.computeIfAbsent(name, RepositoryMetrics::new);
+    }
+
+    // Registers a value read at export time, e.g. a pool or cache statistic.
+    public static void gauge(String name, Supplier<Number> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Dumps everything in Prometheus text exposition format. Latency is reported as a summary in
+     * seconds with 0.5/0.99/0.999 quantiles. Each family's TYPE line is followed by all of its
+     * samples before the next family starts, as the format requires.
+     */
+    public static String export() {
+        List<String> labels = new ArrayList<>();
+        List<OperationMetrics> operations = new ArrayList<>();
+        for (RepositoryMetrics metrics : repositories.values()) {
+            for (RepositoryMetrics.Operation operation : RepositoryMetrics.Operation.values()) {
+                OperationMetrics op = metrics.get(operation);
+                if (op.getLatency().getCount() == 0) {
+                    continue;
+                }
+                labels.add("repository=\"" + metrics.getRepository() + "\",operation=\"" + operation.label() + "\"");
+                operations.add(op);
+            }
+        }
+
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# TYPE repository_latency_seconds summary\n");
+        for (int i = 0; i < operations.size(); i++) {
+            LatencyHistogram latency = operations.get(i).getLatency();
+            quantile(out, labels.get(i), "0.5", latency.percentile(50));
+            quantile(out, labels.get(i), "0.99", latency.percentile(99));
+            quantile(out, labels.get(i), "0.999", latency.percentile(99.9));
+            out.append("repository_latency_seconds_sum{").append(labels.get(i)).append("} ").append(seconds(latency.getSum())).append('\n');
+            out.append("repository_latency_seconds_count{").append(labels.get(i)).append("} ").append(latency.getCount()).append('\n');
+        }
+        out.append("# TYPE repository_rows_total counter\n");
+        for (int i = 0; i < operations.size(); i++) {
+            out.append("repository_rows_total{").append(labels.get(i)).append("} ").append(operations.get(i).getRows()).append('\n');
+        }
+        out.append("# TYPE repository_errors_total counter\n");
+        for (int i = 0; i < operations.size(); i++) {
+            out.append("repository_errors_total{").append(labels.get(i)).append("} ").append(operations.get(i).getErrors()).append('\n');
+        }
+        new TreeMap<>(gauges).forEach((name, value) -> {
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(value.get()).append('\n');
+        });
+        return out.toString();
+    }
+
+    private static void quantile(StringBuilder out, String labels, String quantile, long nanos) {
+        out.append("repository_latency_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(nanos)).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class OperationMetrics {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public void record(long startNanos, long rowCount) {
+        latency.record(System.nanoTime() - startNanos);
+        rows.add(rowCount);
+    }
+
+    public void error(long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+        errors.increment();
+    }
+
+    public LatencyHistogram getLatency() { return latency; }
+    public long getRows() { return rows.sum(); }
+    public long getErrors() { return errors.sum(); }
+}
@@ -0,0 +1,58 @@
+package metrics;
+
+/**
+ * Metrics for one repository, one OperationMetrics per operation resolved up front, so the hot
+ * path is an array read rather than a map lookup.
+ */
+public class RepositoryMetrics {
+
+    public enum Operation {
+        SAVE("save"),
+        FIND_BY_ID("findById"),
+        FIND_ALL("findAll"),
+        UPDATE("update"),
+        DELETE_BY_ID("deleteById"),
+        SAVE_ALL("saveAll"),
+        UPDATE_ALL("updateAll"),
+        FIND_OPEN("findOpen"),
+        FIND_OPEN_BY_COUNTY("findOpenByCounty"),
+        MARK_RESOLVED("markResolved"),
+        UPDATE_QUANTITY("updateQuantity");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final String repository;
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+
+    RepositoryMetrics(String repository) {
+        this.repository = repository;
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    public void record(Operation operation, long startNanos, long rows) {
+        operations[operation.ordinal()].record(startNanos, rows);
+    }
+
+    public void error(Operation operation, long startNanos) {
+        operations[operation.ordinal()].error(startNanos);
+    }
+
+    public OperationMetrics get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+}
@@ -0,0 +1,12 @@
+package repository;
+
+import domain.Ambulances;
+
+public interface AmbulancesListener {
+
+    void onSaved(Ambulances ambulance);
+
+    void onDeleted(int id);
+
+    default void onQuantityChanged(int id, int delta) {}
+}
@@ -0,0 +1,135 @@
+package repository;
+
+import domain.Location;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of RepositoryLocation. Locations are bulk-loaded on construction,
+ * lookups are served from memory and any write through this repository invalidates the entry.
+ *
+ * Every invalidation bumps a write counter before removing the entry, and a loaded row is only
+ * cached if the counter has not moved since the load began, so a miss racing a write cannot put
+ * the pre-write row back. The cache keeps its own copies and hands out fresh ones, so callers
+ * mutating a returned Location cannot change what later lookups see.
+ */
+public class CachingRepositoryLocation implements IRepository<Location, String> {
+
+    protected static final Logger logger = LogManager.getLogger();
+
+    private final RepositoryLocation delegate;
+    private final Map<String, Location> cache = new ConcurrentHashMap<>();
+    private final AtomicLong writes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingRepositoryLocation(RepositoryLocation delegate) {
+        this.delegate = delegate;
+        reload();
+    }
+
+    public void reload() {
+        logger.traceEntry("Loading location cache");
+        long version = writes.get();
+        cache.clear();
+        delegate.forEach(location -> cacheLoaded(location, version));
+        logger.trace("Cached {} locations", cache.size());
+        logger.traceExit("Exiting reload()");
+    }
+
+    @Override
+    public Location save(Location entity) {
+        Location saved = delegate.save(entity);
+        invalidate(entity.getName());
+        return saved;
+    }
+
+    @Override
+    public Optional<Location> findById(String name) {
+        Location location = cache.get(name);
+        if (location != null) {
+            hits.increment();
+            return Optional.of(copyOf(location));
+        }
+
+        misses.increment();
+        long version = writes.get();
+        Optional<Location> loaded = delegate.findById(name);
+        loaded.ifPresent(l -> cacheLoaded(l, version));
+        return loaded;
+    }
+
+    @Override
+    public List<Location> findAll() {
+        long version = writes.get();
+        List<Location> locations = delegate.findAll();
+        locations.forEach(location -> cacheLoaded(location, version));
+        return locations;
+    }
+
+    @Override
+    public void deleteById(String name) {
+        delegate.deleteById(name);
+        invalidate(name);
+    }
+
+    @Override
+    public Location update(Location entity) {
+        Location updated = delegate.update(entity);
+        invalidate(entity.getName());
+        return updated;
+    }
+
+    @Override
+    public List<Location> saveAll(Collection<Location> entities) {
+        List<Location> saved = delegate.saveAll(entities);
+        entities.forEach(location -> invalidate(location.getName()));
+        return saved;
+    }
+
+    @Override
+    public List<Location> updateAll(Collection<Location> entities) {
+        List<Location> updated = delegate.updateAll(entities);
+        entities.forEach(location -> invalidate(location.getName()));
+        return updated;
+    }
+
+    @Override
+    public Stream<Location> streamAll() {
+        return delegate.streamAll();
+    }
+
+    private void invalidate(String name) {
+        writes.incrementAndGet();
+        cache.remove(name);
+    }
+
+    // Caches a copy of a row read when the write counter was at version, unless a write has happened since.
+    private void cacheLoaded(Location location, long version) {
+        Location copy = copyOf(location);
+        cache.compute(location.getName(), (name, current) -> writes.get() == version ? copy : current);
+    }
+
+    private static Location copyOf(Location location) {
+        return new Location(location.getName(), location.getCounty(), location.getLatitude(), location.getLongitude());
+    }
+
+    public int size() { return cache.size(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
@@ -0,0 +1,454 @@
+package repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool. Connections handed out are proxies whose close() returns
+ * the physical connection to the pool instead of closing it, so the repositories'
+ * try-with-resources blocks keep working unchanged.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final List<String> initStatements;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong statementsPrepared = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) {
+        this(url, user, password, minSize, maxSize, maxWaitMillis, idleTimeoutMillis, validationTimeoutSeconds,
+                statementCacheSize, List.of());
+    }
+
+    // initStatements run once on every new physical connection, e.g. session PRAGMAs.
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize, List<String> initStatements) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.initStatements = List.copyOf(initStatements);
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < minSize; i++) {
+            try {
+                idle.offer(new PooledConnection(openPhysical()));
+            } catch (SQLException e) {
+                logger.error("Error pre-filling connection pool for {}", url, e);
+                break;
+            }
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "jdbc-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + maxWaitMillis + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        borrowed.incrementAndGet();
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (pooled.connection.isValid(validationTimeoutSeconds)) {
+                    return pooled.proxy();
+                }
+                validationFailures.incrementAndGet();
+                destroy(pooled.connection);
+            }
+            return new PooledConnection(openPhysical()).proxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection connection = user == null
+                ? DriverManager.getConnection(url)
+                : DriverManager.getConnection(url, user, password);
+        if (!initStatements.isEmpty()) {
+            try (Statement stmt = connection.createStatement()) {
+                for (String sql : initStatements) {
+                    stmt.execute(sql);
+                }
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        open.incrementAndGet();
+        created.incrementAndGet();
+        return connection;
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                destroy(pooled.connection);
+            } else {
+                if (!pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+                pooled.reclaimStatements();
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            logger.error("Error returning connection to pool, discarding it", e);
+            destroy(pooled.connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(Connection connection) {
+        open.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error closing pooled connection", e);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && open.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (pooled.lastUsed < cutoff && idle.remove(pooled)) {
+                evicted.incrementAndGet();
+                destroy(pooled.connection);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled.connection);
+        }
+    }
+
+    public Stats getStats() {
+        int active = maxSize - permits.availablePermits();
+        return new Stats(open.get(), idle.size(), active, maxSize, borrowed.get(), waitNanos.get(),
+                maxWaitNanos.get(), timeouts.get(), created.get(), evicted.get(), validationFailures.get(),
+                statementsPrepared.get(), statementCacheHits.get());
+    }
+
+    public record Stats(int open, int idle, int active, int maxSize, long borrowed, long totalWaitNanos,
+                        long maxWaitNanos, long timeouts, long created, long evicted, long validationFailures,
+                        long statementsPrepared, long statementCacheHits) {
+
+        public double statementCacheHitRate() {
+            long lookups = statementsPrepared + statementCacheHits;
+            return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+        }
+
+        public double utilisation() {
+            return (double) active / maxSize;
+        }
+
+        public double averageWaitMillis() {
+            return borrowed == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowed;
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        // Access-ordered, so iteration order is least recently used first.
+        private final Map<StatementKey, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Hands out the cached statement for key, preparing it on first use. If it is already
+         * checked out (the same SQL nested on one connection) a plain uncached statement is returned.
+         */
+        private PreparedStatement prepare(StatementKey key) throws SQLException {
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                statementCacheHits.incrementAndGet();
+                cached.inUse = true;
+                return cached.proxy;
+            }
+
+            statementsPrepared.incrementAndGet();
+            PreparedStatement statement = key.prepare(connection);
+            if (cached != null) {
+                return statement;
+            }
+            cached = new CachedStatement(statement);
+            cached.inUse = true;
+            statements.put(key, cached);
+            return cached.proxy;
+        }
+
+        // Statements the borrower forgot to close are reset here so the next borrower can reuse them.
+        private void reclaimStatements() throws SQLException {
+            for (CachedStatement cached : statements.values()) {
+                if (cached.inUse) {
+                    cached.proxy.close();
+                }
+            }
+        }
+
+        private Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handler(this));
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released;
+
+        private Handler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.connection.isClosed();
+                case "prepareStatement":
+                    StatementKey key = StatementKey.of(args);
+                    if (!released && statementCacheSize > 0 && key != null) {
+                        return pooled.prepare(key);
+                    }
+                    break;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(pooled.connection)) {
+                        return pooled.connection;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.connection + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private record StatementKey(String sql, int autoGeneratedKeys, int resultSetType, int resultSetConcurrency) {
+
+        private static final int DEFAULT = Integer.MIN_VALUE;
+
+        // Only the prepareStatement overloads that can be told apart by these fields are cached.
+        private static StatementKey of(Object[] args) {
+            if (args.length == 1) {
+                return new StatementKey((String) args[0], DEFAULT, DEFAULT, DEFAULT);
+            }
+            if (args.length == 2 && args[1] instanceof Integer generatedKeys) {
+                return new StatementKey((String) args[0], generatedKeys, DEFAULT, DEFAULT);
+            }
+            if (args.length == 3 && args[1] instanceof Integer type && args[2] instanceof Integer concurrency) {
+                return new StatementKey((String) args[0], DEFAULT, type, concurrency);
+            }
+            return null;
+        }
+
+        private PreparedStatement prepare(Connection connection) throws SQLException {
+            if (autoGeneratedKeys != DEFAULT) {
+                return connection.prepareStatement(sql, autoGeneratedKeys);
+            }
+            if (resultSetType != DEFAULT) {
+                return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+            }
+            return connection.prepareStatement(sql);
+        }
+    }
+
+    /**
+     * A prepared statement kept open for the life of its connection. close() on the proxy resets it
+     * and returns it to the cache; the physical statement closes on eviction or with the connection.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private boolean evicted;
+        private ResultSet lastResult;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closePhysical();
+            }
+        }
+
+        private void closePhysical() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.error("Error closing evicted statement", e);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        if (lastResult != null) {
+                            lastResult.close();
+                            lastResult = null;
+                        }
+                        if (evicted) {
+                            closePhysical();
+                        } else {
+                            statement.clearParameters();
+                            statement.clearBatch();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (!inUse) {
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                Object result = method.invoke(statement, args);
+                if (result instanceof ResultSet && method.getName().equals("executeQuery")) {
+                    lastResult = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
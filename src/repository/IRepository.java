@@ -1,7 +1,10 @@
 package repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface IRepository<T,ID> {
 
@@ -14,4 +17,17 @@ public interface IRepository<T,ID> {
     void deleteById(ID id);
 
     T update(T entity);
-}
\ No newline at end of file
+
+    List<T> saveAll(Collection<T> entities);
+
+    List<T> updateAll(Collection<T> entities);
+
+    // Backed by an open cursor: close the stream (try-with-resources) to release the connection.
+    Stream<T> streamAll();
+
+    default void forEach(Consumer<? super T> action) {
+        try (Stream<T> entities = streamAll()) {
+            entities.forEach(action);
+        }
+    }
+}
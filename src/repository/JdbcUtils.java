@@ -0,0 +1,411 @@
+package repository;
+
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class JdbcUtils {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    // One pool per database, shared by every repository built from the same properties.
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private static final Map<String, SqliteWriter> writers = new ConcurrentHashMap<>();
+    // The transaction inTransaction() is running on this thread, if any.
+    private static final ThreadLocal<Transaction> transactions = new ThreadLocal<>();
+
+    private final Properties jdbcProps;
+    private final String key;
+    private final ConnectionPool pool;
+    private final SqliteWriter writer;
+    private final int batchSize;
+    private final int fetchSize;
+    // Cleared once the driver is seen returning fewer generated keys than batched rows.
+    private volatile boolean batchKeys = true;
+
+    public JdbcUtils(Properties props) {
+        this.jdbcProps = props;
+        this.batchSize = Integer.parseInt(props.getProperty("jdbc.batchSize", "500"));
+        this.fetchSize = Integer.parseInt(props.getProperty("jdbc.fetchSize", "1000"));
+        String url = props.getProperty("jdbc.url");
+        String user = props.getProperty("jdbc.user");
+        this.key = user == null ? url : user + "@" + url;
+        // The writer goes first so WAL is switched on before any reader connects.
+        this.writer = isSingleWriter(props) ? writers.computeIfAbsent(key, k -> createWriter(props)) : null;
+        this.pool = pools.computeIfAbsent(key, k -> createPool(props));
+    }
+
+    /**
+     * SQLite databases default to single-writer mode: WAL journaling, every write serialized and
+     * group-committed through one SqliteWriter connection, reads from the regular pool.
+     * Disable with jdbc.sqlite.singleWriter=false. The writer runs with synchronous=FULL so a
+     * commit survives power loss; jdbc.sqlite.synchronous=NORMAL trades that for fewer fsyncs.
+     */
+    private static boolean isSingleWriter(Properties props) {
+        return isSqlite(props) && Boolean.parseBoolean(props.getProperty("jdbc.sqlite.singleWriter", "true"));
+    }
+
+    private static boolean isSqlite(Properties props) {
+        String url = props.getProperty("jdbc.url");
+        return url != null && url.startsWith("jdbc:sqlite:");
+    }
+
+    private static List<String> sqlitePragmas(Properties props) {
+        return List.of("PRAGMA busy_timeout = " + props.getProperty("jdbc.sqlite.busyTimeoutMillis", "5000"));
+    }
+
+    private static SqliteWriter createWriter(Properties props) {
+        String url = props.getProperty("jdbc.url");
+        logger.info("Creating single-writer connection for {}", url);
+        List<String> pragmas = new ArrayList<>(sqlitePragmas(props));
+        pragmas.add("PRAGMA journal_mode = WAL");
+        pragmas.add("PRAGMA synchronous = " + props.getProperty("jdbc.sqlite.synchronous", "FULL"));
+        ConnectionPool connection = new ConnectionPool(url, props.getProperty("jdbc.user"), props.getProperty("jdbc.pass"),
+                1, 1, Long.parseLong(props.getProperty("jdbc.pool.maxWaitMillis", "5000")), Long.MAX_VALUE / 2,
+                Integer.parseInt(props.getProperty("jdbc.pool.validationTimeoutSeconds", "2")),
+                Integer.parseInt(props.getProperty("jdbc.pool.statementCacheSize", "64")), pragmas);
+        try {
+            SqliteWriter writer = new SqliteWriter(connection,
+                    Integer.parseInt(props.getProperty("jdbc.sqlite.maxGroupSize", "256")));
+            MetricsRegistry.gauge("sqlite_writer_transactions_total", writer::getTransactions);
+            MetricsRegistry.gauge("sqlite_writer_writes_total", writer::getWrites);
+            MetricsRegistry.gauge("sqlite_writer_failed_commits_total", writer::getFailedCommits);
+            return writer;
+        } catch (SQLException e) {
+            connection.close();
+            logger.error("Error opening SQLite writer connection for {}", url, e);
+            throw new RuntimeException("Failed to open SQLite writer: " + e.getMessage(), e);
+        }
+    }
+
+    private static ConnectionPool createPool(Properties props) {
+        String url = props.getProperty("jdbc.url");
+        logger.info("Creating connection pool for {}", url);
+        ConnectionPool pool = new ConnectionPool(
+                url,
+                props.getProperty("jdbc.user"),
+                props.getProperty("jdbc.pass"),
+                Integer.parseInt(props.getProperty("jdbc.pool.minSize", "1")),
+                Integer.parseInt(props.getProperty("jdbc.pool.maxSize", isSingleWriter(props) ? "4" : "10")),
+                Long.parseLong(props.getProperty("jdbc.pool.maxWaitMillis", "5000")),
+                Long.parseLong(props.getProperty("jdbc.pool.idleTimeoutMillis", "300000")),
+                Integer.parseInt(props.getProperty("jdbc.pool.validationTimeoutSeconds", "2")),
+                Integer.parseInt(props.getProperty("jdbc.pool.statementCacheSize", "64")),
+                isSqlite(props) ? sqlitePragmas(props) : List.of()
+        );
+        MetricsRegistry.gauge("jdbc_pool_active_connections", () -> pool.getStats().active());
+        MetricsRegistry.gauge("jdbc_pool_open_connections", () -> pool.getStats().open());
+        MetricsRegistry.gauge("jdbc_pool_wait_timeouts", () -> pool.getStats().timeouts());
+        MetricsRegistry.gauge("jdbc_pool_average_wait_millis", () -> pool.getStats().averageWaitMillis());
+        MetricsRegistry.gauge("jdbc_statements_prepared_total", () -> pool.getStats().statementsPrepared());
+        MetricsRegistry.gauge("jdbc_statement_cache_hits_total", () -> pool.getStats().statementCacheHits());
+        MetricsRegistry.gauge("jdbc_statement_cache_hit_rate", () -> pool.getStats().statementCacheHitRate());
+        return pool;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    /**
+     * Connection for INSERT/UPDATE/DELETE; the same as getConnection() unless in SQLite single-writer
+     * mode. Inside inTransaction() on the same database it is the transaction's connection.
+     */
+    public Connection getWriteConnection() throws SQLException {
+        Transaction transaction = transactions.get();
+        if (transaction != null && transaction.key.equals(key)) {
+            return transaction.enlisted;
+        }
+        return writer == null ? pool.getConnection() : writer.getConnection();
+    }
+
+    /**
+     * Runs work in one transaction. Every write this thread makes through a JdbcUtils for the same
+     * database while it runs joins that transaction, so repository calls spanning several tables
+     * commit or roll back together. Their own commit, rollback and close calls are ignored.
+     * Actions registered with afterCommit() meanwhile run once the commit is durable and are
+     * dropped on rollback.
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        Transaction outer = transactions.get();
+        if (outer != null && outer.key.equals(key)) {
+            return work.run(outer.enlisted);
+        }
+
+        Transaction transaction;
+        T result;
+        try (Connection conn = getWriteConnection()) {
+            conn.setAutoCommit(false);
+            transaction = new Transaction(key, enlist(conn), new ArrayList<>());
+            transactions.set(transaction);
+            try {
+                result = work.run(transaction.enlisted);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                transactions.set(outer);
+                conn.setAutoCommit(true);
+            }
+        }
+        transaction.afterCommit.forEach(Runnable::run);
+        return result;
+    }
+
+    /**
+     * Runs action now, or, inside inTransaction() on the same database, after that transaction
+     * commits. For in-memory side effects of a write, such as listener callbacks, that must not
+     * be seen if the write is rolled back.
+     */
+    public void afterCommit(Runnable action) {
+        Transaction transaction = transactions.get();
+        if (transaction != null && transaction.key.equals(key)) {
+            transaction.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private static Connection enlist(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close", "commit", "setAutoCommit":
+                            return null;
+                        case "rollback":
+                            if (args == null) {
+                                return null;
+                            }
+                            break;
+                        case "getAutoCommit":
+                            return false;
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Runs sql once per entity as a JDBC batch inside a single transaction, flushing every
+     * jdbc.batchSize rows. When keyConsumer is given, generated keys are handed back to the
+     * entities in the order they were supplied. Drivers that return fewer keys than rows for a
+     * batch (sqlite-jdbc reports only the last one) are detected on the first keyed batch; its
+     * rows are rolled back to a savepoint and keyed inserts run row by row from then on.
+     */
+    public <T> void executeBatch(String sql, Collection<T> entities, StatementBinder<T> binder,
+                                 ObjIntConsumer<T> keyConsumer) throws SQLException {
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = keyConsumer == null
+                    ? conn.prepareStatement(sql)
+                    : conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+                if (keyConsumer != null && !batchKeys) {
+                    executeEach(stmt, entities, binder, keyConsumer);
+                } else {
+                    Savepoint start = keyConsumer == null ? null : conn.setSavepoint();
+                    if (executeBatched(stmt, entities, binder, keyConsumer)) {
+                        if (start != null) {
+                            conn.releaseSavepoint(start);
+                        }
+                    } else {
+                        conn.rollback(start);
+                        batchKeys = false;
+                        logger.warn("Driver does not return a generated key per batched row, inserting keyed rows one by one");
+                        executeEach(stmt, entities, binder, keyConsumer);
+                    }
+                }
+                conn.commit();
+
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // False as soon as a flush gets back fewer generated keys than it sent rows.
+    private <T> boolean executeBatched(PreparedStatement stmt, Collection<T> entities, StatementBinder<T> binder,
+                                       ObjIntConsumer<T> keyConsumer) throws SQLException {
+        List<T> pending = new ArrayList<>(Math.min(batchSize, entities.size()));
+        for (T entity : entities) {
+            binder.bind(stmt, entity);
+            stmt.addBatch();
+            pending.add(entity);
+            if (pending.size() == batchSize && !flush(stmt, pending, keyConsumer)) {
+                return false;
+            }
+        }
+        return pending.isEmpty() || flush(stmt, pending, keyConsumer);
+    }
+
+    private static <T> boolean flush(PreparedStatement stmt, List<T> pending, ObjIntConsumer<T> keyConsumer) throws SQLException {
+        stmt.executeBatch();
+        if (keyConsumer != null) {
+            int[] keys = new int[pending.size()];
+            int count = 0;
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    if (count == keys.length) {
+                        return false;
+                    }
+                    keys[count++] = generatedKeys.getInt(1);
+                }
+            }
+            if (count != keys.length) {
+                return false;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                keyConsumer.accept(pending.get(i), keys[i]);
+            }
+        }
+        pending.clear();
+        return true;
+    }
+
+    private static <T> void executeEach(PreparedStatement stmt, Collection<T> entities, StatementBinder<T> binder,
+                                        ObjIntConsumer<T> keyConsumer) throws SQLException {
+        for (T entity : entities) {
+            binder.bind(stmt, entity);
+            stmt.executeUpdate();
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("No generated key returned for " + entity);
+                }
+                keyConsumer.accept(entity, generatedKeys.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Opens a forward-only cursor over sql and maps rows lazily as the stream is consumed.
+     * The connection is held until the stream is closed, so callers must use try-with-resources.
+     */
+    public <T> Stream<T> stream(String sql, RowMapper<T> mapper) throws SQLException {
+        return stream(sql, stmt -> {}, mapper);
+    }
+
+    public <T> Stream<T> stream(String sql, ParameterSetter parameters, RowMapper<T> mapper) throws SQLException {
+        Connection conn = getConnection();
+        PreparedStatement stmt = null;
+        ResultSet rs;
+        try {
+            // Drivers such as PostgreSQL only use a server-side cursor outside autocommit.
+            conn.setAutoCommit(false);
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            parameters.set(stmt);
+            rs = stmt.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(stmt, conn);
+            throw e;
+        }
+
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Failed to read row: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        PreparedStatement openStmt = stmt;
+        return StreamSupport.stream(rows, false).onClose(() -> closeQuietly(rs, openStmt, conn));
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.error("Error closing JDBC resource", e);
+            }
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Properties getProperties() {
+        return jdbcProps;
+    }
+
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    public static void closeAll() {
+        writers.values().forEach(SqliteWriter::close);
+        writers.clear();
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+    }
+
+    private record Transaction(String key, Connection enlisted, List<Runnable> afterCommit) {}
+
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface StatementBinder<T> {
+        void bind(PreparedStatement stmt, T entity) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ParameterSetter {
+        void set(PreparedStatement stmt) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+}
@@ -0,0 +1,7 @@
+package repository;
+
+public interface LoginListener {
+
+    // The login's password was changed or the login was deleted.
+    void onCredentialsChanged(String name);
+}
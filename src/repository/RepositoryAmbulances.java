@@ -1,30 +1,52 @@
 package repository;
 
 import domain.Ambulances;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
 
     private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("ambulances");
+    private final List<AmbulancesListener> listeners = new CopyOnWriteArrayList<>();
     protected static final Logger logger = LogManager.getLogger();
 
     public RepositoryAmbulances(Properties properties) {
         this.jdbcUtils = new JdbcUtils(properties);
     }
 
+    public RepositoryAmbulances(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
+    public void addListener(AmbulancesListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AmbulancesListener listener) {
+        listeners.remove(listener);
+    }
+
     @Override
     public Ambulances save(Ambulances ambulance) {
         logger.traceEntry("Saving ambulance: {}", ambulance);
+        long start = System.nanoTime();
         String sql = "INSERT INTO ambulances(county, city, latitude, longitude, quantity) VALUES (?, ?, ?, ?, ?)";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, ambulance.getCounty());
@@ -42,11 +64,14 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
             logger.error("Error saving ambulance: {}", ambulance, e);
             throw new RuntimeException("Failed to save ambulance: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.SAVE, start, 1);
         logger.trace("Saved ambulance: {}", ambulance);
+        notifyListeners(l -> l.onSaved(ambulance));
         logger.traceExit("Exiting save()");
         return ambulance;
     }
@@ -54,6 +79,7 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
     @Override
     public Optional<Ambulances> findById(Integer id) {
         logger.traceEntry("Finding ambulance by ID: {}", id);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM ambulances WHERE id = ?";
 
         try (Connection conn = jdbcUtils.getConnection();
@@ -72,16 +98,19 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
                 );
                 ambulance.setId(rs.getInt("id"));
 
+                metrics.record(Operation.FIND_BY_ID, start, 1);
                 logger.trace("Found ambulance: {}", ambulance);
                 logger.traceExit("Exiting findById()");
                 return Optional.of(ambulance);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
             logger.error("Error finding ambulance with ID: {}", id, e);
             throw new RuntimeException("Failed to find ambulance: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_BY_ID, start, 0);
         logger.traceExit("No ambulance found with ID: {}", id);
         return Optional.empty();
     }
@@ -89,6 +118,7 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
     @Override
     public List<Ambulances> findAll() {
         logger.traceEntry("Fetching all ambulances");
+        long start = System.nanoTime();
         List<Ambulances> ambulances = new ArrayList<>();
         String sql = "SELECT * FROM ambulances";
 
@@ -109,10 +139,12 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
             logger.error("Error fetching ambulances", e);
             throw new RuntimeException("Failed to fetch ambulances: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_ALL, start, ambulances.size());
         logger.trace("Fetched {} ambulances", ambulances.size());
         logger.traceExit("Exiting findAll()");
         return ambulances;
@@ -121,28 +153,35 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
     @Override
     public void deleteById(Integer id) {
         logger.traceEntry("Deleting ambulance by ID: {}", id);
+        long start = System.nanoTime();
+        int affected;
         String sql = "DELETE FROM ambulances WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, id);
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
             logger.error("Error deleting ambulance by ID: {}", id, e);
             throw new RuntimeException("Failed to delete ambulance: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
         logger.trace("Deleted ambulance with ID: {}", id);
+        notifyListeners(l -> l.onDeleted(id));
         logger.traceExit("Exiting deleteById()");
     }
 
     @Override
     public Ambulances update(Ambulances ambulance) {
         logger.traceEntry("Updating ambulance: {}", ambulance);
+        long start = System.nanoTime();
+        int affected;
         String sql = "UPDATE ambulances SET county = ?, city = ?, latitude = ?, longitude = ?, quantity = ? WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, ambulance.getCounty());
@@ -152,15 +191,160 @@ public class RepositoryAmbulances implements IRepository<Ambulances, Integer> {
             stmt.setInt(5, ambulance.getQuantity());
             stmt.setInt(6, ambulance.getId());
 
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
             logger.error("Error updating ambulance: {}", ambulance, e);
             throw new RuntimeException("Failed to update ambulance: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.UPDATE, start, affected);
         logger.trace("Updated ambulance: {}", ambulance);
+        notifyListeners(l -> l.onSaved(ambulance));
         logger.traceExit("Exiting update()");
         return ambulance;
     }
+
+    // Takes units only if the row still has enough; returns false when another writer got there first.
+    public boolean decrementQuantity(int id, int units) {
+        logger.traceEntry("Decrementing ambulance {} by {}", id, units);
+        String sql = "UPDATE ambulances SET quantity = quantity - ? WHERE id = ? AND quantity >= ?";
+        boolean updated;
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, units);
+            stmt.setInt(2, id);
+            stmt.setInt(3, units);
+
+            updated = stmt.executeUpdate() == 1;
+
+        } catch (SQLException e) {
+            logger.error("Error decrementing ambulance {} by {}", id, units, e);
+            throw new RuntimeException("Failed to decrement ambulance quantity: " + e.getMessage(), e);
+        }
+
+        if (updated) {
+            notifyListeners(l -> l.onQuantityChanged(id, -units));
+        }
+        logger.traceExit("Exiting decrementQuantity()");
+        return updated;
+    }
+
+    public boolean incrementQuantity(int id, int units) {
+        logger.traceEntry("Incrementing ambulance {} by {}", id, units);
+        String sql = "UPDATE ambulances SET quantity = quantity + ? WHERE id = ?";
+        boolean updated;
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, units);
+            stmt.setInt(2, id);
+
+            updated = stmt.executeUpdate() == 1;
+
+        } catch (SQLException e) {
+            logger.error("Error incrementing ambulance {} by {}", id, units, e);
+            throw new RuntimeException("Failed to increment ambulance quantity: " + e.getMessage(), e);
+        }
+
+        if (updated) {
+            notifyListeners(l -> l.onQuantityChanged(id, units));
+        }
+        logger.traceExit("Exiting incrementQuantity()");
+        return updated;
+    }
+
+    @Override
+    public List<Ambulances> saveAll(Collection<Ambulances> ambulances) {
+        logger.traceEntry("Saving {} ambulances", ambulances.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO ambulances(county, city, latitude, longitude, quantity) VALUES (?, ?, ?, ?, ?)";
+
+        try {
+            jdbcUtils.executeBatch(sql, ambulances, (stmt, ambulance) -> {
+                stmt.setString(1, ambulance.getCounty());
+                stmt.setString(2, ambulance.getCity());
+                stmt.setDouble(3, ambulance.getLatitude());
+                stmt.setDouble(4, ambulance.getLongitude());
+                stmt.setInt(5, ambulance.getQuantity());
+            }, Ambulances::setId);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving ambulances", e);
+            throw new RuntimeException("Failed to save ambulances: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, ambulances.size());
+        logger.trace("Saved {} ambulances", ambulances.size());
+        notifyListeners(l -> ambulances.forEach(l::onSaved));
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(ambulances);
+    }
+
+    @Override
+    public List<Ambulances> updateAll(Collection<Ambulances> ambulances) {
+        logger.traceEntry("Updating {} ambulances", ambulances.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE ambulances SET county = ?, city = ?, latitude = ?, longitude = ?, quantity = ? WHERE id = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, ambulances, (stmt, ambulance) -> {
+                stmt.setString(1, ambulance.getCounty());
+                stmt.setString(2, ambulance.getCity());
+                stmt.setDouble(3, ambulance.getLatitude());
+                stmt.setDouble(4, ambulance.getLongitude());
+                stmt.setInt(5, ambulance.getQuantity());
+                stmt.setInt(6, ambulance.getId());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating ambulances", e);
+            throw new RuntimeException("Failed to update ambulances: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, ambulances.size());
+        logger.trace("Updated {} ambulances", ambulances.size());
+        notifyListeners(l -> ambulances.forEach(l::onSaved));
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(ambulances);
+    }
+
+    @Override
+    public Stream<Ambulances> streamAll() {
+        logger.traceEntry("Streaming all ambulances");
+        String sql = "SELECT * FROM ambulances";
+
+        try {
+            Stream<Ambulances> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming ambulances", e);
+            throw new RuntimeException("Failed to stream ambulances: " + e.getMessage(), e);
+        }
+    }
+
+    // Listeners only see changes that committed; inside JdbcUtils.inTransaction() they are told after the commit.
+    private void notifyListeners(Consumer<AmbulancesListener> event) {
+        jdbcUtils.afterCommit(() -> listeners.forEach(event));
+    }
+
+    private Ambulances mapRow(ResultSet rs) throws SQLException {
+        Ambulances ambulance = new Ambulances(
+                rs.getString("county"),
+                rs.getString("city"),
+                rs.getDouble("latitude"),
+                rs.getDouble("longitude"),
+                rs.getInt("quantity")
+        );
+        ambulance.setId(rs.getInt("id"));
+        return ambulance;
+    }
 }
@@ -1,30 +1,41 @@
 package repository;
 
 import domain.ApiRequest;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 public class RepositoryApiRequest implements IRepository<ApiRequest, Integer> {
 
     private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("api_requests");
     protected static final Logger logger = LogManager.getLogger();
 
     public RepositoryApiRequest(Properties props) {
         this.jdbcUtils = new JdbcUtils(props);
     }
 
+    public RepositoryApiRequest(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
     @Override
     public ApiRequest save(ApiRequest entity) {
         logger.traceEntry("Saving API request: {}", entity);
+        long start = System.nanoTime();
         String sql = "INSERT INTO api_requests(endpoint, method, payload, timestamp, status, response) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, entity.getEndpoint());
@@ -43,18 +54,21 @@ public class RepositoryApiRequest implements IRepository<ApiRequest, Integer> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
             logger.error("Error saving API request: {}", entity, e);
             throw new RuntimeException("Failed to save API request: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.SAVE, start, 1);
         logger.trace("Saved API request: {}", entity);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting save()");
         return entity;
     }
 
     @Override
     public Optional<ApiRequest> findById(Integer id) {
         logger.traceEntry("Finding API request by ID: {}", id);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM api_requests WHERE id = ?";
 
         try (Connection conn = jdbcUtils.getConnection();
@@ -73,16 +87,19 @@ public class RepositoryApiRequest implements IRepository<ApiRequest, Integer> {
                         rs.getString("status"),
                         rs.getString("response")
                 );
+                metrics.record(Operation.FIND_BY_ID, start, 1);
                 logger.trace("Found API request: {}", req);
                 logger.traceExit("Exiting findById()");
                 return Optional.of(req);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
             logger.error("Error finding API request with ID: {}", id, e);
             throw new RuntimeException("Failed to find API request: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_BY_ID, start, 0);
         logger.traceExit("No API request found with ID: {}", id);
         return Optional.empty();
     }
@@ -90,6 +107,7 @@ public class RepositoryApiRequest implements IRepository<ApiRequest, Integer> {
     @Override
     public List<ApiRequest> findAll() {
         logger.traceEntry("Fetching all API requests");
+        long start = System.nanoTime();
         List<ApiRequest> requests = new ArrayList<>();
         String sql = "SELECT * FROM api_requests";
 
@@ -111,41 +129,49 @@ public class RepositoryApiRequest implements IRepository<ApiRequest, Integer> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
             logger.error("Error fetching API requests", e);
             throw new RuntimeException("Failed to fetch API requests: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_ALL, start, requests.size());
         logger.trace("Fetched {} API requests", requests.size());
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting findAll()");
         return requests;
     }
 
     @Override
     public void deleteById(Integer id) {
         logger.traceEntry("Deleting API request with ID: {}", id);
+        long start = System.nanoTime();
+        int affected;
         String sql = "DELETE FROM api_requests WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, id);
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
             logger.error("Error deleting API request with ID: {}", id, e);
             throw new RuntimeException("Failed to delete API request: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
         logger.trace("Deleted API request with ID: {}", id);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting deleteById()");
     }
 
     @Override
     public ApiRequest update(ApiRequest entity) {
         logger.traceEntry("Updating API request: {}", entity);
+        long start = System.nanoTime();
+        int affected;
         String sql = "UPDATE api_requests SET endpoint = ?, method = ?, payload = ?, timestamp = ?, status = ?, response = ? WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, entity.getEndpoint());
@@ -156,15 +182,167 @@ public class RepositoryApiRequest implements IRepository<ApiRequest, Integer> {
             stmt.setString(6, entity.getResponse());
             stmt.setInt(7, entity.getId());
 
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
             logger.error("Error updating API request: {}", entity, e);
             throw new RuntimeException("Failed to update API request: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.UPDATE, start, affected);
         logger.trace("Updated API request: {}", entity);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting update()");
         return entity;
     }
+
+    @Override
+    public List<ApiRequest> saveAll(Collection<ApiRequest> requests) {
+        logger.traceEntry("Saving {} API requests", requests.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO api_requests(endpoint, method, payload, timestamp, status, response) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try {
+            jdbcUtils.executeBatch(sql, requests, (stmt, request) -> {
+                stmt.setString(1, request.getEndpoint());
+                stmt.setString(2, request.getMethod());
+                stmt.setString(3, request.getPayload());
+                stmt.setTimestamp(4, request.getTimestamp());
+                stmt.setString(5, request.getStatus());
+                stmt.setString(6, request.getResponse());
+            }, ApiRequest::setId);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving API requests", e);
+            throw new RuntimeException("Failed to save API requests: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, requests.size());
+        logger.trace("Saved {} API requests", requests.size());
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(requests);
+    }
+
+    @Override
+    public List<ApiRequest> updateAll(Collection<ApiRequest> requests) {
+        logger.traceEntry("Updating {} API requests", requests.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE api_requests SET endpoint = ?, method = ?, payload = ?, timestamp = ?, status = ?, response = ? WHERE id = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, requests, (stmt, request) -> {
+                stmt.setString(1, request.getEndpoint());
+                stmt.setString(2, request.getMethod());
+                stmt.setString(3, request.getPayload());
+                stmt.setTimestamp(4, request.getTimestamp());
+                stmt.setString(5, request.getStatus());
+                stmt.setString(6, request.getResponse());
+                stmt.setInt(7, request.getId());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating API requests", e);
+            throw new RuntimeException("Failed to update API requests: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, requests.size());
+        logger.trace("Updated {} API requests", requests.size());
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(requests);
+    }
+
+    public List<ApiRequest> findPage(int afterId, int limit) {
+        logger.traceEntry("Fetching API requests after ID {} (limit {})", afterId, limit);
+        List<ApiRequest> requests = new ArrayList<>();
+        String sql = "SELECT * FROM api_requests WHERE id > ? ORDER BY id LIMIT ?";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    requests.add(mapRow(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error fetching API requests after ID: {}", afterId, e);
+            throw new RuntimeException("Failed to fetch API requests page: " + e.getMessage(), e);
+        }
+
+        logger.trace("Fetched {} API requests", requests.size());
+        logger.traceExit("Exiting findPage()");
+        return requests;
+    }
+
+    /**
+     * One page of rows with from <= timestamp < to, in (timestamp, id) order, after the given
+     * (timestamp, id) position: pass (from, 0) for the first page and the last row's timestamp and id
+     * for the next. The row-value seek is served by idx_api_requests_timestamp_id. Timestamps are bound
+     * with setTimestamp, the same way rows are written.
+     */
+    public List<ApiRequest> findBetween(Timestamp from, Timestamp to, Timestamp afterTimestamp, int afterId, int limit) {
+        logger.traceEntry("Fetching API requests between {} and {} after ({}, {}) (limit {})", from, to, afterTimestamp, afterId, limit);
+        List<ApiRequest> requests = new ArrayList<>();
+        String sql = "SELECT * FROM api_requests WHERE (timestamp, id) > (?, ?) AND timestamp >= ? AND timestamp < ? " +
+                "ORDER BY timestamp, id LIMIT ?";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, afterTimestamp);
+            stmt.setInt(2, afterId);
+            stmt.setTimestamp(3, from);
+            stmt.setTimestamp(4, to);
+            stmt.setInt(5, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    requests.add(mapRow(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error fetching API requests between {} and {}", from, to, e);
+            throw new RuntimeException("Failed to fetch API requests by time range: " + e.getMessage(), e);
+        }
+
+        logger.trace("Fetched {} API requests", requests.size());
+        logger.traceExit("Exiting findBetween()");
+        return requests;
+    }
+
+    @Override
+    public Stream<ApiRequest> streamAll() {
+        logger.traceEntry("Streaming all API requests");
+        String sql = "SELECT * FROM api_requests";
+
+        try {
+            Stream<ApiRequest> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming API requests", e);
+            throw new RuntimeException("Failed to stream API requests: " + e.getMessage(), e);
+        }
+    }
+
+    private ApiRequest mapRow(ResultSet rs) throws SQLException {
+        ApiRequest req = new ApiRequest(
+                rs.getInt("id"),
+                rs.getString("endpoint"),
+                rs.getString("method"),
+                rs.getString("payload"),
+                rs.getTimestamp("timestamp"),
+                rs.getString("status"),
+                rs.getString("response")
+        );
+        return req;
+    }
 }
@@ -0,0 +1,84 @@
+package repository;
+
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.util.OptionalLong;
+import java.util.Properties;
+
+/**
+ * Sequence checkpoints of log consumers. Saving one inside JdbcUtils.inTransaction() together with
+ * the writes it covers makes applying and checkpointing a batch a single commit.
+ */
+public class RepositoryCheckpoint {
+
+    private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("checkpoints");
+    protected static final Logger logger = LogManager.getLogger();
+
+    public RepositoryCheckpoint(Properties props) {
+        this.jdbcUtils = new JdbcUtils(props);
+    }
+
+    public RepositoryCheckpoint(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
+    public OptionalLong findById(String name) {
+        logger.traceEntry("Finding checkpoint: {}", name);
+        long start = System.nanoTime();
+        String sql = "SELECT sequence FROM checkpoints WHERE name = ?";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, name);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long sequence = rs.getLong("sequence");
+                    metrics.record(Operation.FIND_BY_ID, start, 1);
+                    logger.trace("Found checkpoint {} at {}", name, sequence);
+                    logger.traceExit("Exiting findById()");
+                    return OptionalLong.of(sequence);
+                }
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
+            logger.error("Error finding checkpoint: {}", name, e);
+            throw new RuntimeException("Failed to find checkpoint: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.FIND_BY_ID, start, 0);
+        logger.traceExit("No checkpoint found: {}", name);
+        return OptionalLong.empty();
+    }
+
+    public void save(String name, long sequence) {
+        logger.traceEntry("Saving checkpoint {} at {}", name, sequence);
+        long start = System.nanoTime();
+        String sql = "INSERT INTO checkpoints(name, sequence) VALUES (?, ?) " +
+                "ON CONFLICT(name) DO UPDATE SET sequence = excluded.sequence";
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, name);
+            stmt.setLong(2, sequence);
+            stmt.executeUpdate();
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
+            logger.error("Error saving checkpoint {} at {}", name, sequence, e);
+            throw new RuntimeException("Failed to save checkpoint: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE, start, 1);
+        logger.traceExit("Exiting save()");
+    }
+}
@@ -1,30 +1,41 @@
 package repository;
 
 import domain.Dispatch;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
 
     private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("dispatches");
     protected static final Logger logger = LogManager.getLogger();
 
     public RepositoryDispatch(Properties props) {
         this.jdbcUtils = new JdbcUtils(props);
     }
 
+    public RepositoryDispatch(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
     @Override
     public Dispatch save(Dispatch entity) {
         logger.traceEntry("Saving dispatch: {}", entity);
-        String sql = "INSERT INTO dispatches(source_city, source_county, target_city, target_county, quantity) VALUES (?, ?, ?, ?, ?)";
+        long start = System.nanoTime();
+        String sql = "INSERT INTO dispatches(source_city, source_county, target_city, target_county, quantity, timestamp) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, entity.getSourceCity());
@@ -32,6 +43,7 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
             stmt.setString(3, entity.getTargetCity());
             stmt.setString(4, entity.getTargetCounty());
             stmt.setInt(5, entity.getQuantity());
+            stmt.setTimestamp(6, entity.getTimestamp());
 
             stmt.executeUpdate();
 
@@ -42,10 +54,12 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
             logger.error("Error saving dispatch: {}", entity, e);
             throw new RuntimeException("Failed to save dispatch: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.SAVE, start, 1);
         logger.trace("Saved dispatch: {}", entity);
         logger.traceExit("Exiting save()");
         return entity;
@@ -54,6 +68,7 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
     @Override
     public Optional<Dispatch> findById(Integer id) {
         logger.traceEntry("Finding dispatch by ID: {}", id);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM dispatches WHERE id = ?";
 
         try (Connection conn = jdbcUtils.getConnection();
@@ -63,24 +78,20 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
             ResultSet rs = stmt.executeQuery();
 
             if (rs.next()) {
-                Dispatch dispatch = new Dispatch(
-                        rs.getInt("id"),
-                        rs.getString("source_city"),
-                        rs.getString("source_county"),
-                        rs.getString("target_city"),
-                        rs.getString("target_county"),
-                        rs.getInt("quantity")
-                );
+                Dispatch dispatch = mapRow(rs);
+                metrics.record(Operation.FIND_BY_ID, start, 1);
                 logger.trace("Found dispatch: {}", dispatch);
                 logger.traceExit("Exiting findById()");
                 return Optional.of(dispatch);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
             logger.error("Error finding dispatch with ID: {}", id, e);
             throw new RuntimeException("Failed to find dispatch: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_BY_ID, start, 0);
         logger.traceExit("No dispatch found with ID: {}", id);
         return Optional.empty();
     }
@@ -88,6 +99,7 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
     @Override
     public List<Dispatch> findAll() {
         logger.traceEntry("Fetching all dispatches");
+        long start = System.nanoTime();
         List<Dispatch> dispatches = new ArrayList<>();
         String sql = "SELECT * FROM dispatches";
 
@@ -96,22 +108,17 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Dispatch dispatch = new Dispatch(
-                        rs.getInt("id"),
-                        rs.getString("source_city"),
-                        rs.getString("source_county"),
-                        rs.getString("target_city"),
-                        rs.getString("target_county"),
-                        rs.getInt("quantity")
-                );
+                Dispatch dispatch = mapRow(rs);
                 dispatches.add(dispatch);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
             logger.error("Error fetching dispatches", e);
             throw new RuntimeException("Failed to fetch dispatches: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_ALL, start, dispatches.size());
         logger.trace("Fetched {} dispatches", dispatches.size());
         logger.traceExit("Exiting findAll()");
         return dispatches;
@@ -120,19 +127,23 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
     @Override
     public void deleteById(Integer id) {
         logger.traceEntry("Deleting dispatch with ID: {}", id);
+        long start = System.nanoTime();
+        int affected;
         String sql = "DELETE FROM dispatches WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, id);
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
             logger.error("Error deleting dispatch with ID: {}", id, e);
             throw new RuntimeException("Failed to delete dispatch: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
         logger.trace("Deleted dispatch with ID: {}", id);
         logger.traceExit("Exiting deleteById()");
     }
@@ -140,9 +151,11 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
     @Override
     public Dispatch update(Dispatch entity) {
         logger.traceEntry("Updating dispatch: {}", entity);
+        long start = System.nanoTime();
+        int affected;
         String sql = "UPDATE dispatches SET source_city = ?, source_county = ?, target_city = ?, target_county = ?, quantity = ? WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, entity.getSourceCity());
@@ -152,15 +165,166 @@ public class RepositoryDispatch implements IRepository<Dispatch, Integer> {
             stmt.setInt(5, entity.getQuantity());
             stmt.setInt(6, entity.getId());
 
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
             logger.error("Error updating dispatch: {}", entity, e);
             throw new RuntimeException("Failed to update dispatch: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.UPDATE, start, affected);
         logger.trace("Updated dispatch: {}", entity);
         logger.traceExit("Exiting update()");
         return entity;
     }
+
+    @Override
+    public List<Dispatch> saveAll(Collection<Dispatch> dispatches) {
+        logger.traceEntry("Saving {} dispatches", dispatches.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO dispatches(source_city, source_county, target_city, target_county, quantity, timestamp) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try {
+            jdbcUtils.executeBatch(sql, dispatches, (stmt, dispatch) -> {
+                stmt.setString(1, dispatch.getSourceCity());
+                stmt.setString(2, dispatch.getSourceCounty());
+                stmt.setString(3, dispatch.getTargetCity());
+                stmt.setString(4, dispatch.getTargetCounty());
+                stmt.setInt(5, dispatch.getQuantity());
+                stmt.setTimestamp(6, dispatch.getTimestamp());
+            }, Dispatch::setId);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving dispatches", e);
+            throw new RuntimeException("Failed to save dispatches: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, dispatches.size());
+        logger.trace("Saved {} dispatches", dispatches.size());
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(dispatches);
+    }
+
+    @Override
+    public List<Dispatch> updateAll(Collection<Dispatch> dispatches) {
+        logger.traceEntry("Updating {} dispatches", dispatches.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE dispatches SET source_city = ?, source_county = ?, target_city = ?, target_county = ?, quantity = ? WHERE id = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, dispatches, (stmt, dispatch) -> {
+                stmt.setString(1, dispatch.getSourceCity());
+                stmt.setString(2, dispatch.getSourceCounty());
+                stmt.setString(3, dispatch.getTargetCity());
+                stmt.setString(4, dispatch.getTargetCounty());
+                stmt.setInt(5, dispatch.getQuantity());
+                stmt.setInt(6, dispatch.getId());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating dispatches", e);
+            throw new RuntimeException("Failed to update dispatches: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, dispatches.size());
+        logger.trace("Updated {} dispatches", dispatches.size());
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(dispatches);
+    }
+
+    public List<Dispatch> findPage(int afterId, int limit) {
+        logger.traceEntry("Fetching dispatches after ID {} (limit {})", afterId, limit);
+        List<Dispatch> dispatches = new ArrayList<>();
+        String sql = "SELECT * FROM dispatches WHERE id > ? ORDER BY id LIMIT ?";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    dispatches.add(mapRow(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error fetching dispatches after ID: {}", afterId, e);
+            throw new RuntimeException("Failed to fetch dispatches page: " + e.getMessage(), e);
+        }
+
+        logger.trace("Fetched {} dispatches", dispatches.size());
+        logger.traceExit("Exiting findPage()");
+        return dispatches;
+    }
+
+    /**
+     * One page of rows with from <= timestamp < to, in (timestamp, id) order, after the given
+     * (timestamp, id) position: pass (from, 0) for the first page and the last row's timestamp and id
+     * for the next. The row-value seek is served by idx_dispatches_timestamp_id. Timestamps are bound
+     * with setTimestamp, the same way rows are written.
+     */
+    public List<Dispatch> findBetween(Timestamp from, Timestamp to, Timestamp afterTimestamp, int afterId, int limit) {
+        logger.traceEntry("Fetching dispatches between {} and {} after ({}, {}) (limit {})", from, to, afterTimestamp, afterId, limit);
+        List<Dispatch> dispatches = new ArrayList<>();
+        String sql = "SELECT * FROM dispatches WHERE (timestamp, id) > (?, ?) AND timestamp >= ? AND timestamp < ? " +
+                "ORDER BY timestamp, id LIMIT ?";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, afterTimestamp);
+            stmt.setInt(2, afterId);
+            stmt.setTimestamp(3, from);
+            stmt.setTimestamp(4, to);
+            stmt.setInt(5, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    dispatches.add(mapRow(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error fetching dispatches between {} and {}", from, to, e);
+            throw new RuntimeException("Failed to fetch dispatches by time range: " + e.getMessage(), e);
+        }
+
+        logger.trace("Fetched {} dispatches", dispatches.size());
+        logger.traceExit("Exiting findBetween()");
+        return dispatches;
+    }
+
+    @Override
+    public Stream<Dispatch> streamAll() {
+        logger.traceEntry("Streaming all dispatches");
+        String sql = "SELECT * FROM dispatches";
+
+        try {
+            Stream<Dispatch> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming dispatches", e);
+            throw new RuntimeException("Failed to stream dispatches: " + e.getMessage(), e);
+        }
+    }
+
+    private Dispatch mapRow(ResultSet rs) throws SQLException {
+        Dispatch dispatch = new Dispatch(
+                rs.getInt("id"),
+                rs.getString("source_city"),
+                rs.getString("source_county"),
+                rs.getString("target_city"),
+                rs.getString("target_county"),
+                rs.getInt("quantity")
+        );
+        dispatch.setTimestamp(rs.getTimestamp("timestamp"));
+        return dispatch;
+    }
 }
@@ -1,45 +1,65 @@
 package repository;
 
 import domain.Emergency;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 public class RepositoryEmergency implements IRepository<Emergency, String> {
 
     private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("emergencies");
     protected static final Logger logger = LogManager.getLogger();
 
     public RepositoryEmergency(Properties props) {
         this.jdbcUtils = new JdbcUtils(props);
     }
 
+    public RepositoryEmergency(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
     @Override
     public Emergency save(Emergency entity) {
         logger.traceEntry("Saving emergency: {}", entity);
-        String sql = "INSERT INTO emergencies(city, county, latitude, longitude, quantity) VALUES (?, ?, ?, ?, ?)";
+        long start = System.nanoTime();
+        String sql = "INSERT INTO emergencies(city, county, latitude, longitude, quantity, resolved) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = jdbcUtils.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, entity.getCity());
             stmt.setString(2, entity.getCounty());
             stmt.setDouble(3, entity.getLatitude());
             stmt.setDouble(4, entity.getLongitude());
             stmt.setInt(5, entity.getQuantity());
+            stmt.setBoolean(6, entity.isResolved());
 
             stmt.executeUpdate();
 
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    entity.setId(generatedKeys.getInt(1));
+                }
+            }
+
         } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
             logger.error("Error saving emergency: {}", entity, e);
             throw new RuntimeException("Failed to save emergency: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.SAVE, start, 1);
         logger.trace("Saved emergency: {}", entity);
         logger.traceExit("Exiting save()");
         return entity;
@@ -48,6 +68,7 @@ public class RepositoryEmergency implements IRepository<Emergency, String> {
     @Override
     public Optional<Emergency> findById(String city) {
         logger.traceEntry("Finding emergency by city: {}", city);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM emergencies WHERE city = ? LIMIT 1"; // assumes city is unique or takes first
 
         try (Connection conn = jdbcUtils.getConnection();
@@ -57,23 +78,20 @@ public class RepositoryEmergency implements IRepository<Emergency, String> {
             ResultSet rs = stmt.executeQuery();
 
             if (rs.next()) {
-                Emergency emergency = new Emergency(
-                        rs.getString("city"),
-                        rs.getString("county"),
-                        rs.getDouble("latitude"),
-                        rs.getDouble("longitude"),
-                        rs.getInt("quantity")
-                );
+                Emergency emergency = mapRow(rs);
+                metrics.record(Operation.FIND_BY_ID, start, 1);
                 logger.trace("Found emergency: {}", emergency);
                 logger.traceExit("Exiting findById()");
                 return Optional.of(emergency);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
             logger.error("Error finding emergency by city: {}", city, e);
             throw new RuntimeException("Failed to find emergency", e);
         }
 
+        metrics.record(Operation.FIND_BY_ID, start, 0);
         logger.traceExit("No emergency found for city: {}", city);
         return Optional.empty();
     }
@@ -81,6 +99,7 @@ public class RepositoryEmergency implements IRepository<Emergency, String> {
     @Override
     public List<Emergency> findAll() {
         logger.traceEntry("Fetching all emergencies");
+        long start = System.nanoTime();
         List<Emergency> emergencies = new ArrayList<>();
         String sql = "SELECT * FROM emergencies";
 
@@ -89,21 +108,16 @@ public class RepositoryEmergency implements IRepository<Emergency, String> {
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Emergency emergency = new Emergency(
-                        rs.getString("city"),
-                        rs.getString("county"),
-                        rs.getDouble("latitude"),
-                        rs.getDouble("longitude"),
-                        rs.getInt("quantity")
-                );
-                emergencies.add(emergency);
+                emergencies.add(mapRow(rs));
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
             logger.error("Error fetching emergencies", e);
             throw new RuntimeException("Failed to fetch emergencies: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_ALL, start, emergencies.size());
         logger.trace("Fetched {} emergencies", emergencies.size());
         logger.traceExit("Exiting findAll()");
         return emergencies;
@@ -112,18 +126,22 @@ public class RepositoryEmergency implements IRepository<Emergency, String> {
     @Override
     public void deleteById(String city) {
         logger.traceEntry("Deleting emergency in city: {}", city);
+        long start = System.nanoTime();
+        int affected;
         String sql = "DELETE FROM emergencies WHERE city = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, city);
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
             logger.error("Error deleting emergency in city: {}", city, e);
             throw new RuntimeException("Failed to delete emergency", e);
         }
 
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
         logger.trace("Deleted emergency in city: {}", city);
         logger.traceExit("Exiting deleteById()");
     }
@@ -131,26 +149,220 @@ public class RepositoryEmergency implements IRepository<Emergency, String> {
     @Override
     public Emergency update(Emergency entity) {
         logger.traceEntry("Updating emergency: {}", entity);
-        String sql = "UPDATE emergencies SET county = ?, latitude = ?, longitude = ?, quantity = ? WHERE city = ?";
+        long start = System.nanoTime();
+        int affected;
+        String sql = "UPDATE emergencies SET city = ?, county = ?, latitude = ?, longitude = ?, quantity = ?, resolved = ? WHERE id = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setString(1, entity.getCounty());
-            stmt.setDouble(2, entity.getLatitude());
-            stmt.setDouble(3, entity.getLongitude());
-            stmt.setInt(4, entity.getQuantity());
-            stmt.setString(5, entity.getCity());
+            stmt.setString(1, entity.getCity());
+            stmt.setString(2, entity.getCounty());
+            stmt.setDouble(3, entity.getLatitude());
+            stmt.setDouble(4, entity.getLongitude());
+            stmt.setInt(5, entity.getQuantity());
+            stmt.setBoolean(6, entity.isResolved());
+            stmt.setInt(7, entity.getId());
 
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
             logger.error("Error updating emergency: {}", entity, e);
             throw new RuntimeException("Failed to update emergency", e);
         }
 
+        metrics.record(Operation.UPDATE, start, affected);
         logger.trace("Updated emergency: {}", entity);
         logger.traceExit("Exiting update()");
         return entity;
     }
+
+    @Override
+    public List<Emergency> saveAll(Collection<Emergency> emergencies) {
+        logger.traceEntry("Saving {} emergencies", emergencies.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO emergencies(city, county, latitude, longitude, quantity, resolved) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try {
+            jdbcUtils.executeBatch(sql, emergencies, (stmt, emergency) -> {
+                stmt.setString(1, emergency.getCity());
+                stmt.setString(2, emergency.getCounty());
+                stmt.setDouble(3, emergency.getLatitude());
+                stmt.setDouble(4, emergency.getLongitude());
+                stmt.setInt(5, emergency.getQuantity());
+                stmt.setBoolean(6, emergency.isResolved());
+            }, Emergency::setId);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving emergencies", e);
+            throw new RuntimeException("Failed to save emergencies: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, emergencies.size());
+        logger.trace("Saved {} emergencies", emergencies.size());
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(emergencies);
+    }
+
+    @Override
+    public List<Emergency> updateAll(Collection<Emergency> emergencies) {
+        logger.traceEntry("Updating {} emergencies", emergencies.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE emergencies SET city = ?, county = ?, latitude = ?, longitude = ?, quantity = ?, resolved = ? WHERE id = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, emergencies, (stmt, emergency) -> {
+                stmt.setString(1, emergency.getCity());
+                stmt.setString(2, emergency.getCounty());
+                stmt.setDouble(3, emergency.getLatitude());
+                stmt.setDouble(4, emergency.getLongitude());
+                stmt.setInt(5, emergency.getQuantity());
+                stmt.setBoolean(6, emergency.isResolved());
+                stmt.setInt(7, emergency.getId());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating emergencies", e);
+            throw new RuntimeException("Failed to update emergencies: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, emergencies.size());
+        logger.trace("Updated {} emergencies", emergencies.size());
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(emergencies);
+    }
+
+    // Served by the partial index idx_emergencies_open, so cost follows open cases, not history.
+    public List<Emergency> findOpen() {
+        logger.traceEntry("Fetching open emergencies");
+        long start = System.nanoTime();
+        List<Emergency> emergencies = new ArrayList<>();
+        String sql = "SELECT * FROM emergencies WHERE resolved = FALSE ORDER BY id";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                emergencies.add(mapRow(rs));
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_OPEN, start);
+            logger.error("Error fetching open emergencies", e);
+            throw new RuntimeException("Failed to fetch open emergencies: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.FIND_OPEN, start, emergencies.size());
+        logger.trace("Fetched {} open emergencies", emergencies.size());
+        logger.traceExit("Exiting findOpen()");
+        return emergencies;
+    }
+
+    public List<Emergency> findOpenByCounty(String county) {
+        logger.traceEntry("Fetching open emergencies in county: {}", county);
+        long start = System.nanoTime();
+        List<Emergency> emergencies = new ArrayList<>();
+        String sql = "SELECT * FROM emergencies WHERE resolved = FALSE AND county = ? ORDER BY id";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, county);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    emergencies.add(mapRow(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_OPEN_BY_COUNTY, start);
+            logger.error("Error fetching open emergencies in county: {}", county, e);
+            throw new RuntimeException("Failed to fetch open emergencies by county: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.FIND_OPEN_BY_COUNTY, start, emergencies.size());
+        logger.trace("Fetched {} open emergencies in county: {}", emergencies.size(), county);
+        logger.traceExit("Exiting findOpenByCounty()");
+        return emergencies;
+    }
+
+    public void markResolved(Collection<Integer> ids) {
+        logger.traceEntry("Marking {} emergencies resolved", ids.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE emergencies SET resolved = TRUE WHERE id = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, ids, (stmt, id) -> stmt.setInt(1, id), null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.MARK_RESOLVED, start);
+            logger.error("Error marking emergencies resolved: {}", ids, e);
+            throw new RuntimeException("Failed to mark emergencies resolved: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.MARK_RESOLVED, start, ids.size());
+        logger.trace("Marked {} emergencies resolved", ids.size());
+        logger.traceExit("Exiting markResolved()");
+    }
+
+    // False when no emergency has the id.
+    public boolean updateQuantity(int id, int quantity) {
+        logger.traceEntry("Setting quantity of emergency {} to {}", id, quantity);
+        long start = System.nanoTime();
+        int affected;
+        String sql = "UPDATE emergencies SET quantity = ? WHERE id = ?";
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, id);
+
+            affected = stmt.executeUpdate();
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_QUANTITY, start);
+            logger.error("Error setting quantity of emergency {} to {}", id, quantity, e);
+            throw new RuntimeException("Failed to update emergency quantity: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_QUANTITY, start, affected);
+        logger.trace("Set quantity of emergency {} to {}", id, quantity);
+        logger.traceExit("Exiting updateQuantity()");
+        return affected == 1;
+    }
+
+    @Override
+    public Stream<Emergency> streamAll() {
+        logger.traceEntry("Streaming all emergencies");
+        String sql = "SELECT * FROM emergencies";
+
+        try {
+            Stream<Emergency> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming emergencies", e);
+            throw new RuntimeException("Failed to stream emergencies: " + e.getMessage(), e);
+        }
+    }
+
+    private Emergency mapRow(ResultSet rs) throws SQLException {
+        Emergency emergency = new Emergency(
+                rs.getString("city"),
+                rs.getString("county"),
+                rs.getDouble("latitude"),
+                rs.getDouble("longitude"),
+                rs.getInt("quantity"),
+                rs.getBoolean("resolved")
+        );
+        emergency.setId(rs.getInt("id"));
+        return emergency;
+    }
 }
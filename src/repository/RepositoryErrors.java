@@ -0,0 +1,252 @@
+package repository;
+
+import domain.ErrorLog;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+public class RepositoryErrors implements IRepository<ErrorLog, Integer> {
+
+    private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("errors");
+    protected static final Logger logger = LogManager.getLogger();
+
+    public RepositoryErrors(Properties props) {
+        this.jdbcUtils = new JdbcUtils(props);
+    }
+
+    public RepositoryErrors(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
+    @Override
+    public ErrorLog save(ErrorLog entity) {
+        logger.traceEntry("Saving error log: {}", entity);
+        long start = System.nanoTime();
+        String sql = "INSERT INTO errors(missed, over_dispatched, created_at) VALUES (?, ?, ?)";
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            stmt.setInt(1, entity.getMissed());
+            stmt.setInt(2, entity.getOverDispatched());
+            stmt.setTimestamp(3, entity.getCreatedAt());
+
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    entity.setId(generatedKeys.getInt(1));
+                }
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
+            logger.error("Error saving error log: {}", entity, e);
+            throw new RuntimeException("Failed to save error log: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE, start, 1);
+        logger.trace("Saved error log: {}", entity);
+        logger.traceExit("Exiting save()");
+        return entity;
+    }
+
+    @Override
+    public Optional<ErrorLog> findById(Integer id) {
+        logger.traceEntry("Finding error log by ID: {}", id);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM errors WHERE id = ?";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                ErrorLog error = mapRow(rs);
+                metrics.record(Operation.FIND_BY_ID, start, 1);
+                logger.trace("Found error log: {}", error);
+                logger.traceExit("Exiting findById()");
+                return Optional.of(error);
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
+            logger.error("Error finding error log with ID: {}", id, e);
+            throw new RuntimeException("Failed to find error log: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.FIND_BY_ID, start, 0);
+        logger.traceExit("No error log found with ID: {}", id);
+        return Optional.empty();
+    }
+
+    @Override
+    public List<ErrorLog> findAll() {
+        logger.traceEntry("Fetching all error logs");
+        long start = System.nanoTime();
+        List<ErrorLog> errors = new ArrayList<>();
+        String sql = "SELECT * FROM errors";
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                errors.add(mapRow(rs));
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
+            logger.error("Error fetching error logs", e);
+            throw new RuntimeException("Failed to fetch error logs: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.FIND_ALL, start, errors.size());
+        logger.trace("Fetched {} error logs", errors.size());
+        logger.traceExit("Exiting findAll()");
+        return errors;
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        logger.traceEntry("Deleting error log with ID: {}", id);
+        long start = System.nanoTime();
+        int affected;
+        String sql = "DELETE FROM errors WHERE id = ?";
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            affected = stmt.executeUpdate();
+
+        } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
+            logger.error("Error deleting error log with ID: {}", id, e);
+            throw new RuntimeException("Failed to delete error log: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
+        logger.trace("Deleted error log with ID: {}", id);
+        logger.traceExit("Exiting deleteById()");
+    }
+
+    @Override
+    public ErrorLog update(ErrorLog entity) {
+        logger.traceEntry("Updating error log: {}", entity);
+        long start = System.nanoTime();
+        int affected;
+        String sql = "UPDATE errors SET missed = ?, over_dispatched = ?, created_at = ? WHERE id = ?";
+
+        try (Connection conn = jdbcUtils.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, entity.getMissed());
+            stmt.setInt(2, entity.getOverDispatched());
+            stmt.setTimestamp(3, entity.getCreatedAt());
+            stmt.setInt(4, entity.getId());
+
+            affected = stmt.executeUpdate();
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
+            logger.error("Error updating error log: {}", entity, e);
+            throw new RuntimeException("Failed to update error log: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE, start, affected);
+        logger.trace("Updated error log: {}", entity);
+        logger.traceExit("Exiting update()");
+        return entity;
+    }
+
+    @Override
+    public List<ErrorLog> saveAll(Collection<ErrorLog> errors) {
+        logger.traceEntry("Saving {} error logs", errors.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO errors(missed, over_dispatched, created_at) VALUES (?, ?, ?)";
+
+        try {
+            jdbcUtils.executeBatch(sql, errors, (stmt, error) -> {
+                stmt.setInt(1, error.getMissed());
+                stmt.setInt(2, error.getOverDispatched());
+                stmt.setTimestamp(3, error.getCreatedAt());
+            }, ErrorLog::setId);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving error logs", e);
+            throw new RuntimeException("Failed to save error logs: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, errors.size());
+        logger.trace("Saved {} error logs", errors.size());
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(errors);
+    }
+
+    @Override
+    public List<ErrorLog> updateAll(Collection<ErrorLog> errors) {
+        logger.traceEntry("Updating {} error logs", errors.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE errors SET missed = ?, over_dispatched = ?, created_at = ? WHERE id = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, errors, (stmt, error) -> {
+                stmt.setInt(1, error.getMissed());
+                stmt.setInt(2, error.getOverDispatched());
+                stmt.setTimestamp(3, error.getCreatedAt());
+                stmt.setInt(4, error.getId());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating error logs", e);
+            throw new RuntimeException("Failed to update error logs: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, errors.size());
+        logger.trace("Updated {} error logs", errors.size());
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(errors);
+    }
+
+    @Override
+    public Stream<ErrorLog> streamAll() {
+        logger.traceEntry("Streaming all error logs");
+        String sql = "SELECT * FROM errors";
+
+        try {
+            Stream<ErrorLog> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming error logs", e);
+            throw new RuntimeException("Failed to stream error logs: " + e.getMessage(), e);
+        }
+    }
+
+    private ErrorLog mapRow(ResultSet rs) throws SQLException {
+        ErrorLog error = new ErrorLog(
+                rs.getInt("id"),
+                rs.getInt("missed"),
+                rs.getInt("over_dispatched"),
+                rs.getTimestamp("created_at")
+        );
+        return error;
+    }
+}
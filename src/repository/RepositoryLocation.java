@@ -1,30 +1,42 @@
 package repository;
 
 import domain.Location;
+import domain.NameDictionary;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 public class RepositoryLocation implements IRepository<Location, String> {
 
     private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("locations");
     protected static final Logger logger = LogManager.getLogger();
 
     public RepositoryLocation(Properties props) {
         this.jdbcUtils = new JdbcUtils(props);
     }
 
+    public RepositoryLocation(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
     @Override
     public Location save(Location entity) {
         logger.traceEntry("Saving location: {}", entity);
+        long start = System.nanoTime();
         String sql = "INSERT INTO locations(name, county, latitude, longitude) VALUES (?, ?, ?, ?)";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, entity.getName());
@@ -35,18 +47,21 @@ public class RepositoryLocation implements IRepository<Location, String> {
             stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
             logger.error("Error saving location: {}", entity, e);
             throw new RuntimeException("Failed to save location: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.SAVE, start, 1);
         logger.trace("Saved location: {}", entity);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting save()");
         return entity;
     }
 
     @Override
     public Optional<Location> findById(String name) {
         logger.traceEntry("Finding location by name: {}", name);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM locations WHERE name = ?";
 
         try (Connection conn = jdbcUtils.getConnection();
@@ -62,16 +77,19 @@ public class RepositoryLocation implements IRepository<Location, String> {
                         rs.getDouble("latitude"),
                         rs.getDouble("longitude")
                 );
+                metrics.record(Operation.FIND_BY_ID, start, 1);
                 logger.trace("Found location: {}", location);
-                logger.traceExit("Exiting...");
+                logger.traceExit("Exiting findById()");
                 return Optional.of(location);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
             logger.error("Error finding location by name: {}", name, e);
             throw new RuntimeException("Failed to find location: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_BY_ID, start, 0);
         logger.traceExit("No location found with name: {}", name);
         return Optional.empty();
     }
@@ -79,6 +97,7 @@ public class RepositoryLocation implements IRepository<Location, String> {
     @Override
     public List<Location> findAll() {
         logger.traceEntry("Fetching all locations");
+        long start = System.nanoTime();
         List<Location> locations = new ArrayList<>();
         String sql = "SELECT * FROM locations";
 
@@ -97,41 +116,49 @@ public class RepositoryLocation implements IRepository<Location, String> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
             logger.error("Error fetching locations", e);
             throw new RuntimeException("Failed to fetch locations: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_ALL, start, locations.size());
         logger.trace("Fetched {} locations", locations.size());
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting findAll()");
         return locations;
     }
 
     @Override
     public void deleteById(String name) {
         logger.traceEntry("Deleting location with name: {}", name);
+        long start = System.nanoTime();
+        int affected;
         String sql = "DELETE FROM locations WHERE name = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, name);
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
             logger.error("Error deleting location with name: {}", name, e);
             throw new RuntimeException("Failed to delete location: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
         logger.trace("Deleted location with name: {}", name);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting deleteById()");
     }
 
     @Override
     public Location update(Location entity) {
         logger.traceEntry("Updating location: {}", entity);
+        long start = System.nanoTime();
+        int affected;
         String sql = "UPDATE locations SET county = ?, latitude = ?, longitude = ? WHERE name = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, entity.getCounty());
@@ -139,15 +166,129 @@ public class RepositoryLocation implements IRepository<Location, String> {
             stmt.setDouble(3, entity.getLongitude());
             stmt.setString(4, entity.getName());
 
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
             logger.error("Error updating location: {}", entity, e);
             throw new RuntimeException("Failed to update location: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.UPDATE, start, affected);
         logger.trace("Updated location: {}", entity);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting update()");
         return entity;
     }
+
+    @Override
+    public List<Location> saveAll(Collection<Location> locations) {
+        logger.traceEntry("Saving {} locations", locations.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO locations(name, county, latitude, longitude) VALUES (?, ?, ?, ?)";
+
+        try {
+            jdbcUtils.executeBatch(sql, locations, (stmt, location) -> {
+                stmt.setString(1, location.getName());
+                stmt.setString(2, location.getCounty());
+                stmt.setDouble(3, location.getLatitude());
+                stmt.setDouble(4, location.getLongitude());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving locations", e);
+            throw new RuntimeException("Failed to save locations: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, locations.size());
+        logger.trace("Saved {} locations", locations.size());
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(locations);
+    }
+
+    @Override
+    public List<Location> updateAll(Collection<Location> locations) {
+        logger.traceEntry("Updating {} locations", locations.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE locations SET county = ?, latitude = ?, longitude = ? WHERE name = ?";
+
+        try {
+            jdbcUtils.executeBatch(sql, locations, (stmt, location) -> {
+                stmt.setString(1, location.getCounty());
+                stmt.setDouble(2, location.getLatitude());
+                stmt.setDouble(3, location.getLongitude());
+                stmt.setString(4, location.getName());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating locations", e);
+            throw new RuntimeException("Failed to update locations: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, locations.size());
+        logger.trace("Updated {} locations", locations.size());
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(locations);
+    }
+
+    /**
+     * Assigns NameDictionary ids to every location name and county, so the known cities and
+     * counties get the low, dense ids before emergencies and stations are read. Returns the
+     * number of locations read.
+     */
+    public int loadNameDictionary() {
+        logger.traceEntry("Loading name dictionary from locations");
+        long start = System.nanoTime();
+        String sql = "SELECT name, county FROM locations ORDER BY county, name";
+        int loaded = 0;
+
+        try (Connection conn = jdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                NameDictionary.COUNTIES.id(rs.getString("county"));
+                NameDictionary.CITIES.id(rs.getString("name"));
+                loaded++;
+            }
+
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
+            logger.error("Error loading name dictionary from locations", e);
+            throw new RuntimeException("Failed to load name dictionary: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.FIND_ALL, start, loaded);
+        logger.trace("Dictionary holds {} cities and {} counties",
+                NameDictionary.CITIES.size() - 1, NameDictionary.COUNTIES.size() - 1);
+        logger.traceExit("Exiting loadNameDictionary()");
+        return loaded;
+    }
+
+    @Override
+    public Stream<Location> streamAll() {
+        logger.traceEntry("Streaming all locations");
+        String sql = "SELECT * FROM locations";
+
+        try {
+            Stream<Location> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming locations", e);
+            throw new RuntimeException("Failed to stream locations: " + e.getMessage(), e);
+        }
+    }
+
+    private Location mapRow(ResultSet rs) throws SQLException {
+        Location location = new Location(
+                rs.getString("name"),
+                rs.getString("county"),
+                rs.getDouble("latitude"),
+                rs.getDouble("longitude")
+        );
+        return location;
+    }
 }
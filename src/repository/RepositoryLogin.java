@@ -1,49 +1,77 @@
 package repository;
 
+import auth.PasswordHasher;
 import domain.Login;
+import metrics.MetricsRegistry;
+import metrics.RepositoryMetrics;
+import metrics.RepositoryMetrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 public class RepositoryLogin implements IRepository<Login, String> {
 
     private final JdbcUtils jdbcUtils;
+    private final RepositoryMetrics metrics = MetricsRegistry.repository("login");
+    private final List<LoginListener> listeners = new CopyOnWriteArrayList<>();
     protected static final Logger logger = LogManager.getLogger();
 
     public RepositoryLogin(Properties props) {
         this.jdbcUtils = new JdbcUtils(props);
     }
 
+    public RepositoryLogin(JdbcUtils jdbcUtils) {
+        this.jdbcUtils = jdbcUtils;
+    }
+
+    public void addListener(LoginListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LoginListener listener) {
+        listeners.remove(listener);
+    }
+
     @Override
     public Login save(Login entity) {
         logger.traceEntry("Saving login: {}", entity);
+        long start = System.nanoTime();
         String sql = "INSERT INTO login(name, password_hash) VALUES (?, ?)";
+        String hash = storedHash(entity);
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, entity.getName());
-            stmt.setString(2, entity.getPasswordHash());
+            stmt.setString(2, hash);
             stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.SAVE, start);
             logger.error("Error saving login: {}", entity, e);
             throw new RuntimeException("Failed to save login: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.SAVE, start, 1);
         logger.trace("Saved login: {}", entity);
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting save()");
         return entity;
     }
 
     @Override
     public Optional<Login> findById(String name) {
         logger.traceEntry("Finding login by name: {}", name);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM login WHERE name = ?";
 
         try (Connection conn = jdbcUtils.getConnection();
@@ -57,16 +85,19 @@ public class RepositoryLogin implements IRepository<Login, String> {
                         rs.getString("name"),
                         rs.getString("password_hash")
                 );
+                metrics.record(Operation.FIND_BY_ID, start, 1);
                 logger.trace("Found login: {}", login);
-                logger.traceExit("Exiting...");
+                logger.traceExit("Exiting findById()");
                 return Optional.of(login);
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID, start);
             logger.error("Error finding login with name: {}", name, e);
             throw new RuntimeException("Failed to find login: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_BY_ID, start, 0);
         logger.traceExit("No login found with name: {}", name);
         return Optional.empty();
     }
@@ -74,6 +105,7 @@ public class RepositoryLogin implements IRepository<Login, String> {
     @Override
     public List<Login> findAll() {
         logger.traceEntry("Fetching all logins");
+        long start = System.nanoTime();
         List<Login> logins = new ArrayList<>();
         String sql = "SELECT * FROM login";
 
@@ -90,55 +122,165 @@ public class RepositoryLogin implements IRepository<Login, String> {
             }
 
         } catch (SQLException e) {
+            metrics.error(Operation.FIND_ALL, start);
             logger.error("Error fetching logins", e);
             throw new RuntimeException("Failed to fetch logins: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.FIND_ALL, start, logins.size());
         logger.trace("Fetched {} logins", logins.size());
-        logger.traceExit("Exiting...");
+        logger.traceExit("Exiting findAll()");
         return logins;
     }
 
     @Override
     public void deleteById(String name) {
         logger.traceEntry("Deleting login with name: {}", name);
+        long start = System.nanoTime();
+        int affected;
         String sql = "DELETE FROM login WHERE name = ?";
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, name);
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.DELETE_BY_ID, start);
             logger.error("Error deleting login with name: {}", name, e);
             throw new RuntimeException("Failed to delete login: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.DELETE_BY_ID, start, affected);
         logger.trace("Deleted login with name: {}", name);
-        logger.traceExit("Exiting...");
+        listeners.forEach(l -> l.onCredentialsChanged(name));
+        logger.traceExit("Exiting deleteById()");
     }
 
     @Override
     public Login update(Login entity) {
         logger.traceEntry("Updating login: {}", entity);
+        long start = System.nanoTime();
+        int affected;
         String sql = "UPDATE login SET password_hash = ? WHERE name = ?";
+        String hash = storedHash(entity);
 
-        try (Connection conn = jdbcUtils.getConnection();
+        try (Connection conn = jdbcUtils.getWriteConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setString(1, entity.getPasswordHash());
+            stmt.setString(1, hash);
             stmt.setString(2, entity.getName());
 
-            stmt.executeUpdate();
+            affected = stmt.executeUpdate();
 
         } catch (SQLException e) {
+            metrics.error(Operation.UPDATE, start);
             logger.error("Error updating login: {}", entity, e);
             throw new RuntimeException("Failed to update login: " + e.getMessage(), e);
         }
 
+        metrics.record(Operation.UPDATE, start, affected);
         logger.trace("Updated login: {}", entity);
-        logger.traceExit("Exiting...");
+        listeners.forEach(l -> l.onCredentialsChanged(entity.getName()));
+        logger.traceExit("Exiting update()");
         return entity;
     }
+
+    @Override
+    public List<Login> saveAll(Collection<Login> logins) {
+        logger.traceEntry("Saving {} logins", logins.size());
+        long start = System.nanoTime();
+        String sql = "INSERT INTO login(name, password_hash) VALUES (?, ?)";
+        Map<Login, String> hashes = storedHashes(logins);
+
+        try {
+            jdbcUtils.executeBatch(sql, logins, (stmt, login) -> {
+                stmt.setString(1, login.getName());
+                stmt.setString(2, hashes.get(login));
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.SAVE_ALL, start);
+            logger.error("Error saving logins", e);
+            throw new RuntimeException("Failed to save logins: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.SAVE_ALL, start, logins.size());
+        logger.trace("Saved {} logins", logins.size());
+        logger.traceExit("Exiting saveAll()");
+        return new ArrayList<>(logins);
+    }
+
+    @Override
+    public List<Login> updateAll(Collection<Login> logins) {
+        logger.traceEntry("Updating {} logins", logins.size());
+        long start = System.nanoTime();
+        String sql = "UPDATE login SET password_hash = ? WHERE name = ?";
+        Map<Login, String> hashes = storedHashes(logins);
+
+        try {
+            jdbcUtils.executeBatch(sql, logins, (stmt, login) -> {
+                stmt.setString(1, hashes.get(login));
+                stmt.setString(2, login.getName());
+            }, null);
+
+        } catch (SQLException e) {
+            metrics.error(Operation.UPDATE_ALL, start);
+            logger.error("Error updating logins", e);
+            throw new RuntimeException("Failed to update logins: " + e.getMessage(), e);
+        }
+
+        metrics.record(Operation.UPDATE_ALL, start, logins.size());
+        logger.trace("Updated {} logins", logins.size());
+        logins.forEach(login -> listeners.forEach(l -> l.onCredentialsChanged(login.getName())));
+        logger.traceExit("Exiting updateAll()");
+        return new ArrayList<>(logins);
+    }
+
+    /**
+     * The value to store for a login: the hash of its new plaintext password if it carries one,
+     * otherwise its existing PBKDF2 hash. Hashing is deliberately slow, so callers do it before
+     * taking a write connection rather than while holding the single SQLite writer; the login
+     * itself is left as it was.
+     */
+    private static String storedHash(Login login) {
+        if (login.getPassword() != null) {
+            return PasswordHasher.hash(login.getPassword());
+        }
+        if (!PasswordHasher.isHash(login.getPasswordHash())) {
+            throw new IllegalArgumentException("Login " + login.getName() + " has neither a password nor a password hash");
+        }
+        return login.getPasswordHash();
+    }
+
+    private static Map<Login, String> storedHashes(Collection<Login> logins) {
+        Map<Login, String> hashes = new IdentityHashMap<>();
+        logins.forEach(login -> hashes.put(login, storedHash(login)));
+        return hashes;
+    }
+
+    @Override
+    public Stream<Login> streamAll() {
+        logger.traceEntry("Streaming all logins");
+        String sql = "SELECT * FROM login";
+
+        try {
+            Stream<Login> stream = jdbcUtils.stream(sql, this::mapRow);
+            logger.traceExit("Exiting streamAll()");
+            return stream;
+
+        } catch (SQLException e) {
+            logger.error("Error streaming logins", e);
+            throw new RuntimeException("Failed to stream logins: " + e.getMessage(), e);
+        }
+    }
+
+    private Login mapRow(ResultSet rs) throws SQLException {
+        Login login = new Login(
+                rs.getString("name"),
+                rs.getString("password_hash")
+        );
+        return login;
+    }
 }
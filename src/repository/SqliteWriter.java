@@ -0,0 +1,237 @@
+package repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The only connection that writes to a SQLite database. SQLite allows one writer at a time, so
+ * instead of letting pooled connections race for the lock and fail with SQLITE_BUSY, writers take
+ * turns on this connection through a fair lock.
+ *
+ * Turns are group-committed: each writer's work runs inside a savepoint of one open transaction,
+ * and the turn that finds nobody queued behind it (or fills the group) commits for everyone.
+ * Earlier members block in close() until that commit, so a write is durable when close() returns,
+ * and a failed commit is reported to every member of the group.
+ */
+final class SqliteWriter implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final int maxGroupSize;
+    private final ReentrantLock turn = new ReentrantLock(true);
+
+    // Guarded by turn.
+    private Group group = new Group();
+
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+
+    SqliteWriter(ConnectionPool pool, int maxGroupSize) throws SQLException {
+        this.pool = pool;
+        this.maxGroupSize = maxGroupSize;
+        this.connection = pool.getConnection();
+        this.connection.setAutoCommit(false);
+    }
+
+    Connection getConnection() throws SQLException {
+        boolean nested = turn.isHeldByCurrentThread();
+        turn.lock();
+        try {
+            execute("SAVEPOINT sp_write");
+        } catch (SQLException | RuntimeException e) {
+            endTurn(nested);
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Session(nested));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    /**
+     * Hands the turn on. A nested turn leaves committing to the outer one; otherwise the group is
+     * committed here unless another writer is already queued to join it.
+     */
+    private void endTurn(boolean nested) {
+        if (!nested && group.members > 0 && (group.members >= maxGroupSize || !turn.hasQueuedThreads())) {
+            Group committing = group;
+            group = new Group();
+            try {
+                connection.commit();
+                transactions.incrementAndGet();
+            } catch (SQLException e) {
+                failedCommits.incrementAndGet();
+                committing.failure = e;
+                logger.error("Error committing group of {} writes", committing.members, e);
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            }
+            committing.done.countDown();
+        }
+        turn.unlock();
+    }
+
+    @Override
+    public void close() {
+        turn.lock();
+        Group committing = group;
+        try {
+            if (committing.members > 0) {
+                connection.commit();
+                transactions.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            failedCommits.incrementAndGet();
+            committing.failure = e;
+            logger.error("Error committing group of {} writes on close", committing.members, e);
+        } finally {
+            committing.done.countDown();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error closing SQLite writer", e);
+        } finally {
+            turn.unlock();
+            pool.close();
+        }
+    }
+
+    long getTransactions() { return transactions.get(); }
+    long getWrites() { return writes.get(); }
+    long getFailedCommits() { return failedCommits.get(); }
+
+    private static final class Group {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int members;
+        private volatile SQLException failure;
+    }
+
+    /**
+     * One writer's view of the shared connection. Its own transaction control maps onto the
+     * savepoint: commit() keeps the work so far, rollback() discards it, and close() joins the group.
+     */
+    private final class Session implements InvocationHandler {
+        private final boolean nested;
+        private boolean autoCommit = true;
+        private boolean closed;
+
+        private Session(boolean nested) {
+            this.nested = nested;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        finish();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SqliteWriter[" + connection + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Write connection has already been closed");
+            }
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "commit":
+                    execute("RELEASE sp_write");
+                    execute("SAVEPOINT sp_write");
+                    return null;
+                case "rollback":
+                    if (args == null) {
+                        execute("ROLLBACK TO sp_write");
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void finish() throws SQLException {
+            Group joined = group;
+            try {
+                // Like a pooled connection, uncommitted work in manual-commit mode is discarded.
+                if (!autoCommit) {
+                    execute("ROLLBACK TO sp_write");
+                }
+                execute("RELEASE sp_write");
+                joined.members++;
+                writes.incrementAndGet();
+            } catch (SQLException e) {
+                try {
+                    execute("ROLLBACK TO sp_write");
+                    execute("RELEASE sp_write");
+                } catch (SQLException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                endTurn(nested);
+                throw e;
+            }
+            endTurn(nested);
+            if (nested) {
+                return;
+            }
+
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    joined.done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (joined.failure != null) {
+                throw new SQLException("Group commit failed: " + joined.failure.getMessage(), joined.failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import domain.Emergency;
+import escalation.EscalatedCase;
+import escalation.EscalationListener;
+import escalation.EscalationQueue;
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes the escalation queue to operator UIs as server-sent events. A new client first gets the
+ * current top cases, then every change as it happens. Each client has a fixed-size event buffer
+ * drained by its own (virtual) request thread; a client too slow to keep it from filling is sent a
+ * "reset" event and disconnected, and picks up a fresh snapshot when it reconnects. Memory is
+ * therefore bounded by maxClients x clientBuffer events however far behind the clients fall.
+ */
+public class EscalationStream implements HttpHandler {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final String RESET = "event: reset\ndata: {}\n\n";
+
+    private final EscalationQueue queue;
+    private final int clientBuffer;
+    private final int maxClients;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final LongAdder slowClientsDropped = new LongAdder();
+
+    public EscalationStream(EscalationQueue queue, int clientBuffer, int maxClients) {
+        this.queue = queue;
+        this.clientBuffer = clientBuffer;
+        this.maxClients = maxClients;
+
+        MetricsRegistry.gauge("escalation_queue_size", queue::size);
+        MetricsRegistry.gauge("escalation_queue_evicted_total", queue::getEvicted);
+        MetricsRegistry.gauge("escalation_stream_clients", clients::size);
+        MetricsRegistry.gauge("escalation_stream_slow_clients_dropped_total", slowClientsDropped::sum);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        if (clients.size() >= maxClients) {
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        Client client = new Client();
+        List<EscalatedCase> snapshot = queue.subscribe(client, clientBuffer);
+        clients.add(client);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                StringBuilder initial = new StringBuilder(": connected\n\n");
+                snapshot.forEach(c -> initial.append(escalatedEvent(c)));
+                write(out, initial.toString());
+                client.stream(out);
+            }
+        } catch (IOException e) {
+            logger.debug("Escalation stream client disconnected: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queue.removeListener(client);
+            clients.remove(client);
+            exchange.close();
+        }
+    }
+
+    private static void write(OutputStream out, String event) throws IOException {
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static String escalatedEvent(EscalatedCase escalated) {
+        Emergency emergency = escalated.emergency();
+        return "id: " + escalated.sequence() + "\nevent: escalated\ndata: {"
+                + "\"emergencyId\":" + emergency.getId()
+                + ",\"severity\":" + Json.quote(escalated.severity().name())
+                + ",\"city\":" + Json.quote(emergency.getCity())
+                + ",\"county\":" + Json.quote(emergency.getCounty())
+                + ",\"latitude\":" + emergency.getLatitude()
+                + ",\"longitude\":" + emergency.getLongitude()
+                + ",\"quantity\":" + escalated.quantity()
+                + ",\"escalatedAt\":" + escalated.escalatedAtMillis()
+                + "}\n\n";
+    }
+
+    private final class Client implements EscalationListener {
+        private final BlockingQueue<String> events = new ArrayBlockingQueue<>(Math.max(1, clientBuffer));
+        private volatile boolean overflowed;
+
+        @Override
+        public void onEscalated(EscalatedCase escalated) {
+            offer(escalatedEvent(escalated));
+        }
+
+        @Override
+        public void onRemoved(int emergencyId) {
+            offer("event: removed\ndata: {\"emergencyId\":" + emergencyId + "}\n\n");
+        }
+
+        // Called under the queue's lock, so this must never block.
+        private void offer(String event) {
+            if (overflowed || events.offer(event)) {
+                return;
+            }
+            overflowed = true;
+            slowClientsDropped.increment();
+            queue.removeListener(this);
+            events.clear();
+            events.offer(RESET);
+        }
+
+        private void stream(OutputStream out) throws IOException, InterruptedException {
+            while (true) {
+                String event = events.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (event == null) {
+                    write(out, ": keepalive\n\n");
+                    continue;
+                }
+                write(out, event);
+                if (event == RESET) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package server;
+
+import audit.ApiRequestAuditLogger;
+import auth.SessionStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dispatch.IncrementalDispatcher;
+import domain.Ambulances;
+import domain.ApiRequest;
+import domain.Dispatch;
+import domain.Emergency;
+import domain.NameDictionary;
+import escalation.EscalationQueue;
+import escalation.Severity;
+import inventory.AmbulanceInventory;
+import metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.RepositoryAmbulances;
+import repository.RepositoryEmergency;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * REST intake for emulator events and operator decisions. Every exchange runs on its own virtual
+ * thread, so a request blocked in JDBC parks cheaply instead of holding an OS thread. Database work
+ * is gated by a semaphore sized to the connection pool: requests beyond it wait for a permit
+ * (up to dbWaitMillis, then 503) rather than piling up on the pool itself.
+ *
+ *   POST /emergencies {city, county, latitude, longitude, quantity, severity?}
+ *   POST /ambulances  {county, city, latitude, longitude, quantity} - registers a station
+ *   POST /ambulances  {id, quantity} - units now available at a known station
+ *   POST /decisions   {emergencyId, quantity?} - new demand if quantity is given, otherwise resolved
+ *   POST /sessions    {name, password} - operator login, returns {token}
+ *   GET  /escalations - server-sent events for the operator UI
+ *
+ * With a SessionStore, /decisions requires "Authorization: Bearer <token>" and is checked in
+ * memory; only /sessions reads the login table. Without one, decisions are not authenticated.
+ *
+ * A known station's new count goes through AmbulanceInventory as a conditional change rather than
+ * overwriting the row, so it cannot undo units a dispatcher took meanwhile; if the count keeps
+ * moving the report is rejected with 409. Pass the dispatcher the same inventory.
+ *
+ * An emergency is escalated to the operator when reported HIGH or CRITICAL, or when dispatch
+ * could not cover its demand.
+ *
+ * City and county names must already be in NameDictionary, which RepositoryLocation.loadNameDictionary
+ * fills from the locations table at startup; unknown names are rejected with 400 so request bodies
+ * cannot grow the dictionary.
+ */
+public class IntakeServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger();
+    private static final int STREAM_CLIENT_BUFFER = 256;
+    private static final int STREAM_MAX_CLIENTS = 64;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final RepositoryEmergency repositoryEmergency;
+    private final RepositoryAmbulances repositoryAmbulances;
+    private final AmbulanceInventory ambulanceInventory;
+    private final IncrementalDispatcher dispatcher;
+    private final ApiRequestAuditLogger auditLogger;
+    private final EscalationQueue escalations;
+    private final SessionStore sessions;
+    private final Semaphore dbPermits;
+    private final long dbWaitMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public IntakeServer(int port, RepositoryEmergency repositoryEmergency, RepositoryAmbulances repositoryAmbulances,
+                        AmbulanceInventory ambulanceInventory, IncrementalDispatcher dispatcher,
+                        ApiRequestAuditLogger auditLogger, EscalationQueue escalations, int dbConcurrency,
+                        long dbWaitMillis) throws IOException {
+        this(port, repositoryEmergency, repositoryAmbulances, ambulanceInventory, dispatcher, auditLogger, escalations,
+                null, dbConcurrency, dbWaitMillis);
+    }
+
+    public IntakeServer(int port, RepositoryEmergency repositoryEmergency, RepositoryAmbulances repositoryAmbulances,
+                        AmbulanceInventory ambulanceInventory, IncrementalDispatcher dispatcher,
+                        ApiRequestAuditLogger auditLogger, EscalationQueue escalations, SessionStore sessions,
+                        int dbConcurrency, long dbWaitMillis) throws IOException {
+        this.repositoryEmergency = repositoryEmergency;
+        this.repositoryAmbulances = repositoryAmbulances;
+        this.ambulanceInventory = ambulanceInventory;
+        this.dispatcher = dispatcher;
+        this.auditLogger = auditLogger;
+        this.escalations = escalations;
+        this.sessions = sessions;
+        this.dbPermits = new Semaphore(dbConcurrency, true);
+        this.dbWaitMillis = dbWaitMillis;
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/emergencies", exchange -> handle(exchange, Access.PUBLIC, this::onEmergency));
+        server.createContext("/ambulances", exchange -> handle(exchange, Access.PUBLIC, this::onAmbulances));
+        server.createContext("/decisions", exchange -> handle(exchange, Access.OPERATOR, this::onDecision));
+        if (sessions != null) {
+            server.createContext("/sessions", exchange -> handle(exchange, Access.CREDENTIALS, this::onSession));
+        }
+        server.createContext("/escalations", new EscalationStream(escalations, STREAM_CLIENT_BUFFER, STREAM_MAX_CLIENTS));
+
+        MetricsRegistry.gauge("intake_requests_in_flight", inFlight::get);
+        MetricsRegistry.gauge("intake_db_permits_available", dbPermits::availablePermits);
+        MetricsRegistry.gauge("intake_db_waiters", dbPermits::getQueueLength);
+
+        server.start();
+        logger.info("Intake server listening on port {} (database concurrency {})", getPort(), dbConcurrency);
+    }
+
+    private String onEmergency(Map<String, Object> body) throws InterruptedException {
+        Emergency emergency = new Emergency(
+                knownName(NameDictionary.CITIES, "city", Json.string(body, "city")),
+                knownName(NameDictionary.COUNTIES, "county", Json.string(body, "county")),
+                Json.number(body, "latitude"),
+                Json.number(body, "longitude"),
+                Json.integer(body, "quantity"));
+        if (emergency.getQuantity() <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Severity severity = body.get("severity") == null
+                ? Severity.MODERATE
+                : Severity.valueOf(Json.string(body, "severity").toUpperCase(Locale.ROOT));
+
+        List<Dispatch> dispatches = withDatabase(() -> {
+            repositoryEmergency.save(emergency);
+            return dispatcher.onEmergency(emergency);
+        });
+
+        int dispatched = dispatches.stream().mapToInt(Dispatch::getQuantity).sum();
+        if (severity.compareTo(Severity.HIGH) >= 0 || dispatched < emergency.getQuantity()) {
+            escalations.escalate(emergency, severity);
+        }
+        return "{\"id\":" + emergency.getId() + ",\"dispatches\":" + toJson(dispatches) + "}";
+    }
+
+    private String onAmbulances(Map<String, Object> body) throws InterruptedException {
+        if (body.get("id") != null) {
+            return onStationReport(Json.integer(body, "id"), Json.integer(body, "quantity"));
+        }
+        Ambulances station = new Ambulances(
+                knownName(NameDictionary.COUNTIES, "county", Json.string(body, "county")),
+                knownName(NameDictionary.CITIES, "city", Json.string(body, "city")),
+                Json.number(body, "latitude"),
+                Json.number(body, "longitude"),
+                Json.integer(body, "quantity"));
+        if (station.getQuantity() < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+
+        List<Dispatch> dispatches = withDatabase(() -> {
+            repositoryAmbulances.save(station);
+            return dispatcher.onStationChanged(station);
+        });
+        return "{\"id\":" + station.getId() + ",\"dispatches\":" + toJson(dispatches) + "}";
+    }
+
+    private String onStationReport(int id, int quantity) throws InterruptedException {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        List<Dispatch> dispatches = withDatabase(() -> {
+            Ambulances station = repositoryAmbulances.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown station: " + id));
+            if (!ambulanceInventory.restock(id, quantity)) {
+                throw new Conflict();
+            }
+            station.setQuantity(quantity);
+            return dispatcher.onStationChanged(station);
+        });
+        return "{\"id\":" + id + ",\"dispatches\":" + toJson(dispatches) + "}";
+    }
+
+    private String onDecision(Map<String, Object> body) throws InterruptedException {
+        int emergencyId = Json.integer(body, "emergencyId");
+        if (body.get("quantity") != null) {
+            int quantity = Json.integer(body, "quantity");
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Quantity must not be negative");
+            }
+            // Saved first, so a restart or a recompute reloading open emergencies sees the new demand.
+            List<Dispatch> dispatches = withDatabase(() -> {
+                if (!repositoryEmergency.updateQuantity(emergencyId, quantity)) {
+                    throw new IllegalArgumentException("Unknown emergency: " + emergencyId);
+                }
+                return dispatcher.onDemandChanged(emergencyId, quantity);
+            });
+            return "{\"dispatches\":" + toJson(dispatches) + "}";
+        }
+        if (!dispatcher.isEventLogged()) {
+            withDatabase(() -> {
+                repositoryEmergency.markResolved(List.of(emergencyId));
+                return null;
+            });
+        }
+        dispatcher.onResolved(emergencyId);
+        escalations.resolve(emergencyId);
+        return "{\"resolved\":" + emergencyId + "}";
+    }
+
+    private String onSession(Map<String, Object> body) throws InterruptedException {
+        String name = Json.string(body, "name");
+        char[] password = Json.string(body, "password").toCharArray();
+        Optional<String> token = sessions.login(name, password, this::withDatabase);
+        if (token.isEmpty()) {
+            throw new Unauthorized();
+        }
+        return "{\"token\":" + Json.quote(token.get()) + "}";
+    }
+
+    private static String knownName(NameDictionary dictionary, String field, String name) {
+        if (dictionary.find(name) == NameDictionary.UNKNOWN) {
+            throw new IllegalArgumentException("Unknown " + field + ": " + name);
+        }
+        return name;
+    }
+
+    private void authorize(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+        if (sessions.authenticate(token).isEmpty()) {
+            throw new Unauthorized();
+        }
+    }
+
+    private <T> T withDatabase(Supplier<T> work) throws InterruptedException {
+        if (!dbPermits.tryAcquire(dbWaitMillis, TimeUnit.MILLISECONDS)) {
+            throw new Saturated();
+        }
+        try {
+            return work.get();
+        } finally {
+            dbPermits.release();
+        }
+    }
+
+    private void handle(HttpExchange exchange, Access access, Handler handler) throws IOException {
+        inFlight.incrementAndGet();
+        String payload = null;
+        int status;
+        String response;
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                status = 405;
+                response = error("Method not allowed");
+            } else {
+                if (access == Access.OPERATOR && sessions != null) {
+                    authorize(exchange);
+                }
+                payload = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                response = handler.handle(Json.parseObject(payload));
+                status = 200;
+            }
+        } catch (Unauthorized e) {
+            status = 401;
+            response = error("Unauthorized");
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            response = error(e.getMessage());
+        } catch (Conflict e) {
+            status = 409;
+            response = error("Station count changed concurrently, retry");
+        } catch (Saturated e) {
+            status = 503;
+            response = error("Database busy, retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 503;
+            response = error("Interrupted");
+        } catch (RuntimeException e) {
+            logger.error("Error handling {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            status = 500;
+            response = error("Internal server error");
+        }
+
+        try {
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            if (status == 503) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            } else if (status == 401) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            audit(exchange, access == Access.CREDENTIALS ? null : payload, status, response);
+        }
+    }
+
+    private void audit(HttpExchange exchange, String payload, int status, String response) {
+        if (auditLogger == null) {
+            return;
+        }
+        auditLogger.record(new ApiRequest(0, exchange.getRequestURI().getPath(), exchange.getRequestMethod(), payload,
+                new Timestamp(System.currentTimeMillis()), status < 400 ? "success" : "failed", response));
+    }
+
+    private static String toJson(List<Dispatch> dispatches) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Dispatch dispatch : dispatches) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"sourceCity\":").append(Json.quote(dispatch.getSourceCity()))
+                    .append(",\"sourceCounty\":").append(Json.quote(dispatch.getSourceCounty()))
+                    .append(",\"targetCity\":").append(Json.quote(dispatch.getTargetCity()))
+                    .append(",\"targetCounty\":").append(Json.quote(dispatch.getTargetCounty()))
+                    .append(",\"quantity\":").append(dispatch.getQuantity())
+                    .append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private enum Access {
+        PUBLIC,
+        // Needs a session token when the server has a SessionStore.
+        OPERATOR,
+        // Carries a password: never written to the audit log.
+        CREDENTIALS
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        String handle(Map<String, Object> body) throws InterruptedException;
+    }
+
+    // Thrown when no database permit frees up in time; mapped to 503.
+    private static final class Saturated extends RuntimeException {
+        private Saturated() {
+            super(null, null, false, false);
+        }
+    }
+
+    // A station report that could not be applied because its count kept changing; mapped to 409.
+    private static final class Conflict extends RuntimeException {
+        private Conflict() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Missing, expired or invalidated session token, or a failed login; mapped to 401.
+    private static final class Unauthorized extends RuntimeException {
+        private Unauthorized() {
+            super(null, null, false, false);
+        }
+    }
+}
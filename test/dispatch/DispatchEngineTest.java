@@ -0,0 +1,107 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Dispatch;
+import domain.Emergency;
+import org.junit.jupiter.api.Test;
+import repository.JdbcUtils;
+import repository.RepositoryDispatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DispatchEngineTest {
+
+    private final List<Dispatch> saved = new ArrayList<>();
+    private final RepositoryDispatch repositoryDispatch = new RepositoryDispatch((JdbcUtils) null) {
+        @Override
+        public List<Dispatch> saveAll(Collection<Dispatch> dispatches) {
+            saved.addAll(dispatches);
+            return new ArrayList<>(dispatches);
+        }
+    };
+    private final DispatchEngine engine = new DispatchEngine(repositoryDispatch);
+
+    @Test
+    void greedyServesInArrivalOrderFromTheNearestStationsFirst() {
+        DispatchPlan plan = engine.plan(
+                List.of(emergency(1, "A", 45.0, 3), emergency(2, "B", 45.05, 2)),
+                List.of(station(10, "X", 45.5, 4), station(11, "Y", 45.02, 2)),
+                DispatchMode.GREEDY);
+
+        // The first emergency empties the nearer Y and takes one from X; the second gets X's rest.
+        assertEquals(3, plan.size());
+        assertAllocation(plan, 0, 0, 1, 2);
+        assertAllocation(plan, 1, 0, 0, 1);
+        assertAllocation(plan, 2, 1, 0, 2);
+        assertEquals(1, plan.getResidualSupply(0));
+        assertEquals(0, plan.getTotalUnmetDemand());
+    }
+
+    @Test
+    void greedyLeavesDemandUnmetWhenSupplyRunsOut() {
+        DispatchPlan plan = engine.plan(
+                List.of(emergency(1, "A", 45.0, 3), emergency(2, "B", 45.1, 2)),
+                List.of(station(10, "X", 45.0, 4)),
+                DispatchMode.GREEDY);
+
+        assertEquals(4, plan.getDispatchedUnits());
+        assertEquals(0, plan.getUnmetDemand(0));
+        assertEquals(1, plan.getUnmetDemand(1));
+        assertEquals(0, plan.getResidualSupply(0));
+    }
+
+    @Test
+    void dispatchSavesEveryAllocationInOneBatch() {
+        DispatchPlan plan = engine.dispatch(
+                List.of(emergency(1, "A", 45.0, 3)),
+                List.of(station(10, "X", 45.1, 1), station(11, "Y", 45.2, 5)));
+
+        assertEquals(2, saved.size());
+        assertEquals("X", saved.get(0).getSourceCity());
+        assertEquals(1, saved.get(0).getQuantity());
+        assertEquals("Y", saved.get(1).getSourceCity());
+        assertEquals(2, saved.get(1).getQuantity());
+        assertEquals("A", saved.get(1).getTargetCity());
+        assertEquals(1, engine.getStats().getTicks(DispatchMode.GREEDY));
+        assertEquals(plan.getDispatchedUnits(), saved.stream().mapToInt(Dispatch::getQuantity).sum());
+    }
+
+    @Test
+    void storeAndListProblemsGiveTheSamePlan() {
+        List<Emergency> emergencies = List.of(emergency(1, "A", 45.0, 2), emergency(2, "B", 45.3, 3));
+        List<Ambulances> stations = List.of(station(10, "X", 45.1, 2), station(11, "Y", 45.4, 2));
+        EmergencyStore store = new EmergencyStore(4);
+        emergencies.forEach(store::add);
+
+        DispatchPlan fromList = engine.plan(emergencies, stations, DispatchMode.GREEDY);
+        DispatchPlan fromStore = engine.plan(store, stations, DispatchMode.GREEDY);
+
+        assertEquals(fromList.size(), fromStore.size());
+        for (int i = 0; i < fromList.size(); i++) {
+            assertAllocation(fromStore, i, fromList.getEmergencyIndex(i), fromList.getStationIndex(i), fromList.getQuantity(i));
+        }
+        assertEquals(fromList.getTotalDistanceKm(), fromStore.getTotalDistanceKm(), 1e-9);
+    }
+
+    private static void assertAllocation(DispatchPlan plan, int i, int emergency, int station, int units) {
+        assertEquals(emergency, plan.getEmergencyIndex(i), "emergency of allocation " + i);
+        assertEquals(station, plan.getStationIndex(i), "station of allocation " + i);
+        assertEquals(units, plan.getQuantity(i), "units of allocation " + i);
+    }
+
+    private static Emergency emergency(int id, String city, double latitude, int quantity) {
+        Emergency emergency = new Emergency(city, "K", latitude, 25.0, quantity);
+        emergency.setId(id);
+        return emergency;
+    }
+
+    private static Ambulances station(int id, String city, double latitude, int quantity) {
+        Ambulances station = new Ambulances("K", city, latitude, 25.0, quantity);
+        station.setId(id);
+        return station;
+    }
+}
@@ -0,0 +1,132 @@
+package dispatch;
+
+import domain.Emergency;
+import org.junit.jupiter.api.Test;
+import repository.JdbcUtils;
+import repository.RepositoryEmergency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmergencyStoreTest {
+
+    private final EmergencyStore store = new EmergencyStore(4);
+
+    @Test
+    void storedEmergencyReadsBackFromItsColumns() {
+        int slot = store.add(emergency(7, "A", 45.5, 3));
+
+        Emergency stored = store.toEmergency(slot);
+        assertEquals(7, stored.getId());
+        assertEquals("A", stored.getCity());
+        assertEquals("K", stored.getCounty());
+        assertEquals(45.5, stored.getLatitude(), 0);
+        assertEquals(25.0, stored.getLongitude(), 0);
+        assertEquals(3, stored.getQuantity());
+        assertEquals(slot, store.slotOf(7));
+    }
+
+    @Test
+    void addingAStoredEmergencyAgainOverwritesItsSlot() {
+        int slot = store.add(emergency(7, "A", 45.5, 3));
+
+        assertEquals(slot, store.add(emergency(7, "B", 46.0, 5)));
+        assertEquals(1, store.size());
+        assertEquals("B", store.getCity(slot));
+        assertEquals(5, store.getQuantity(slot));
+    }
+
+    @Test
+    void removedSlotsAreReused() {
+        store.add(emergency(1, "A", 45.0, 1));
+        int freed = store.add(emergency(2, "A", 45.0, 1));
+        store.add(emergency(3, "A", 45.0, 1));
+
+        assertTrue(store.remove(2));
+        assertFalse(store.remove(2));
+        assertFalse(store.isLive(freed));
+
+        assertEquals(freed, store.add(emergency(4, "A", 45.0, 1)));
+        assertEquals(3, store.capacity());
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    void arrivalOrderSkipsRemovedEmergencies() {
+        for (int id = 1; id <= 5; id++) {
+            store.add(emergency(id, "A", 45.0, 1));
+        }
+        store.remove(2);
+        store.remove(4);
+        store.add(emergency(6, "A", 45.0, 1));
+
+        assertEquals(List.of(1, 3, 5, 6), arrivalIds());
+    }
+
+    @Test
+    void columnsGrowPastTheInitialCapacity() {
+        for (int id = 1; id <= 100; id++) {
+            store.add(emergency(id, "A", 45.0 + id / 1000.0, id));
+        }
+        for (int id = 1; id <= 100; id += 2) {
+            store.remove(id);
+        }
+
+        assertEquals(50, store.size());
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 2; id <= 100; id += 2) {
+            expected.add(id);
+            assertEquals(id, store.getQuantity(store.slotOf(id)));
+        }
+        assertEquals(expected, arrivalIds());
+    }
+
+    @Test
+    void updateQuantityChangesOnlyStoredEmergencies() {
+        int slot = store.add(emergency(7, "A", 45.0, 3));
+
+        assertTrue(store.updateQuantity(7, 1));
+        assertFalse(store.updateQuantity(8, 1));
+        assertEquals(1, store.getQuantity(slot));
+    }
+
+    @Test
+    void unsavedEmergencyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> store.add(emergency(0, "A", 45.0, 1)));
+    }
+
+    @Test
+    void loadTakesTheOpenEmergencies() {
+        RepositoryEmergency repository = new RepositoryEmergency((JdbcUtils) null) {
+            @Override
+            public List<Emergency> findOpen() {
+                return List.of(emergency(3, "A", 45.0, 1), emergency(9, "B", 45.1, 2));
+            }
+        };
+
+        EmergencyStore loaded = EmergencyStore.load(repository);
+
+        assertEquals(2, loaded.size());
+        assertEquals(2, loaded.getQuantity(loaded.slotOf(9)));
+    }
+
+    private List<Integer> arrivalIds() {
+        int[] order = store.arrivalOrder();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            ids.add(store.getId(order[i]));
+        }
+        return ids;
+    }
+
+    private static Emergency emergency(int id, String city, double latitude, int quantity) {
+        Emergency emergency = new Emergency(city, "K", latitude, 25.0, quantity);
+        emergency.setId(id);
+        return emergency;
+    }
+}
@@ -0,0 +1,137 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Emergency;
+import domain.ErrorLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import repository.JdbcUtils;
+import repository.RepositoryErrors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ErrorCountersTest {
+
+    // Long enough that the background flusher never runs during a test; flush() is called directly.
+    private static final long INTERVAL_MILLIS = 3_600_000;
+
+    private final List<ErrorLog> saved = new ArrayList<>();
+    private boolean failing;
+    private final RepositoryErrors repository = new RepositoryErrors((JdbcUtils) null) {
+        @Override
+        public ErrorLog save(ErrorLog entity) {
+            if (failing) {
+                throw new RuntimeException("database down");
+            }
+            saved.add(entity);
+            return entity;
+        }
+    };
+    private final ErrorCounters counters = new ErrorCounters(repository, INTERVAL_MILLIS, 2);
+
+    @AfterEach
+    void tearDown() {
+        counters.close();
+    }
+
+    @Test
+    void emergencyIsCountedMissedOnceUntilResolved() {
+        counters.markMissed(1);
+        counters.markMissed(1);
+        counters.markMissed(1);
+        assertEquals(1, counters.getMissed());
+
+        counters.markResolved(1);
+        counters.markMissed(1);
+        assertEquals(2, counters.getMissed());
+    }
+
+    @Test
+    void flushWritesOneRowOfDeltasPerInterval() {
+        counters.markMissed(1);
+        counters.markMissed(2);
+        counters.recordOverDispatched(3);
+        counters.flush();
+        counters.flush();
+        counters.markMissed(3);
+        counters.flush();
+
+        assertEquals(List.of("2/3", "1/0"), rows());
+    }
+
+    @Test
+    void failedFlushIsCarriedIntoTheNextRow() {
+        failing = true;
+        counters.markMissed(1);
+        counters.flush();
+        assertEquals(List.of(), rows());
+
+        failing = false;
+        counters.markMissed(2);
+        counters.recordOverDispatched(1);
+        counters.flush();
+
+        assertEquals(List.of("2/1"), rows());
+    }
+
+    @Test
+    void ratesAverageTheLastIntervals() {
+        counters.markMissed(1);
+        counters.markMissed(2);
+        counters.flush();
+        assertEquals(2 * 60_000.0 / INTERVAL_MILLIS, counters.getMissedPerMinute(), 1e-9);
+
+        counters.flush();
+        assertEquals(60_000.0 / INTERVAL_MILLIS, counters.getMissedPerMinute(), 1e-9);
+
+        // Only two intervals are kept: the first one drops out.
+        counters.markMissed(3);
+        counters.markMissed(4);
+        counters.markMissed(5);
+        counters.markMissed(6);
+        counters.flush();
+        assertEquals(2 * 60_000.0 / INTERVAL_MILLIS, counters.getMissedPerMinute(), 1e-9);
+    }
+
+    @Test
+    void planMarksShortEmergenciesAndForgetsOnesNoLongerOpen() {
+        DispatchEngine engine = new DispatchEngine(null, new GreedyDispatchSolver(), new GreedyDispatchSolver());
+        List<Ambulances> stations = List.of(station(10, 2));
+
+        counters.record(engine.plan(List.of(emergency(1, 3), emergency(2, 1)), stations, DispatchMode.GREEDY));
+        counters.record(engine.plan(List.of(emergency(1, 3), emergency(2, 1)), stations, DispatchMode.GREEDY));
+        assertEquals(2, counters.getMissed());
+
+        // Emergency 2 left the open set, so being short again later is a new miss.
+        counters.record(engine.plan(List.of(emergency(1, 3)), stations, DispatchMode.GREEDY));
+        counters.record(engine.plan(List.of(emergency(1, 3), emergency(2, 1)), stations, DispatchMode.GREEDY));
+        assertEquals(3, counters.getMissed());
+    }
+
+    @Test
+    void closeFlushesWhatIsLeft() {
+        counters.recordOverDispatched(2);
+        counters.close();
+
+        assertEquals(List.of("0/2"), rows());
+    }
+
+    private List<String> rows() {
+        return saved.stream().map(row -> row.getMissed() + "/" + row.getOverDispatched()).toList();
+    }
+
+    private static Emergency emergency(int id, int quantity) {
+        Emergency emergency = new Emergency("A", "K", 45.0, 25.0, quantity);
+        emergency.setId(id);
+        return emergency;
+    }
+
+    private static Ambulances station(int id, int quantity) {
+        Ambulances station = new Ambulances("K", "X", 45.1, 25.0, quantity);
+        station.setId(id);
+        return station;
+    }
+}
@@ -0,0 +1,168 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Dispatch;
+import domain.Emergency;
+import inventory.AmbulanceInventory;
+import org.junit.jupiter.api.Test;
+import repository.FakeDatabase;
+import repository.JdbcUtils;
+import repository.RepositoryAmbulances;
+import repository.RepositoryDispatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalDispatcherTest {
+
+    private final List<Dispatch> saved = new ArrayList<>();
+    private final RepositoryDispatch repositoryDispatch = new RepositoryDispatch((JdbcUtils) null) {
+        @Override
+        public List<Dispatch> saveAll(Collection<Dispatch> dispatches) {
+            saved.addAll(dispatches);
+            return new ArrayList<>(dispatches);
+        }
+    };
+    private final DispatchEngine engine = new DispatchEngine(repositoryDispatch,
+            new GreedyDispatchSolver(), new GreedyDispatchSolver());
+
+    @Test
+    void recomputeOverProjectedFleetDoesNotResendAssignedUnits() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        Emergency emergency = emergency(1, 3);
+
+        dispatcher.recompute(List.of(emergency), List.of(station(10, "X", 3), station(11, "Y", 5)), DispatchMode.GREEDY);
+        assertEquals(3, sentUnits());
+
+        // The database now holds net counts: X gave its three units to the emergency.
+        dispatcher.recompute(List.of(emergency), List.of(station(10, "X", 0), station(11, "Y", 5)), DispatchMode.GREEDY);
+        dispatcher.recompute(List.of(station(10, "X", 0), station(11, "Y", 5)), DispatchMode.GREEDY);
+
+        assertEquals(3, sentUnits(), "units sent to a demand of 3");
+        assertEquals(0, dispatcher.getWaitingCount());
+    }
+
+    @Test
+    void recomputeSendsOnlyTheUnmetRemainder() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        dispatcher.recompute(List.of(emergency(1, 3)), List.of(station(10, "X", 2)), DispatchMode.GREEDY);
+        assertEquals(2, sentUnits());
+        assertEquals(1, dispatcher.getWaitingCount());
+
+        dispatcher.recompute(List.of(station(10, "X", 0), station(11, "Y", 5)), DispatchMode.GREEDY);
+
+        assertEquals(3, sentUnits());
+        assertEquals(0, dispatcher.getWaitingCount());
+    }
+
+    @Test
+    void stationReportReplacesResidualCount() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        dispatcher.onStationChanged(station(10, "X", 2));
+        dispatcher.onEmergency(emergency(1, 5));
+        assertEquals(2, sentUnits());
+
+        // X reports the two units it has now; both are new supply for the waiting emergency.
+        dispatcher.onStationChanged(station(10, "X", 2));
+
+        assertEquals(4, sentUnits());
+        assertEquals(1, dispatcher.getWaitingCount());
+    }
+
+    @Test
+    void recomputeDropsEmergenciesMissingFromTheList() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        dispatcher.recompute(List.of(emergency(1, 4), emergency(2, 4)), List.of(station(10, "X", 4)), DispatchMode.GREEDY);
+        assertEquals(2, dispatcher.getOpenCount());
+
+        dispatcher.recompute(List.of(emergency(2, 4)), List.of(station(10, "X", 3)), DispatchMode.GREEDY);
+
+        assertEquals(1, dispatcher.getOpenCount());
+        assertEquals(7, sentUnits());
+    }
+
+    @Test
+    void newEmergencyIsServedFromTheNearestStationsWithUnits() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        dispatcher.onStationChanged(station(10, "X", 5));
+        dispatcher.onStationChanged(station(40, "Y", 5));
+        dispatcher.onStationChanged(station(20, "Z", 1));
+
+        List<Dispatch> dispatches = dispatcher.onEmergency(emergency(1, 3));
+
+        assertEquals(List.of("X:3"), describe(dispatches));
+        assertEquals(0, dispatcher.getWaitingCount());
+    }
+
+    @Test
+    void loweredDemandHandsSurplusToWaitingEmergencies() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        dispatcher.onStationChanged(station(10, "X", 4));
+        dispatcher.onEmergency(emergency(1, 4));
+        dispatcher.onEmergency(emergency(2, 3));
+        assertEquals(1, dispatcher.getWaitingCount());
+
+        List<Dispatch> dispatches = dispatcher.onDemandChanged(1, 1);
+
+        assertEquals(List.of("X:3"), describe(dispatches));
+        assertEquals(0, dispatcher.getWaitingCount());
+        assertEquals(7, sentUnits());
+    }
+
+    @Test
+    void resolvedEmergencyStopsWaiting() {
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch);
+        dispatcher.onEmergency(emergency(1, 2));
+        assertEquals(1, dispatcher.getWaitingCount());
+
+        dispatcher.onResolved(1);
+        List<Dispatch> dispatches = dispatcher.onStationChanged(station(10, "X", 5));
+
+        assertEquals(List.of(), dispatches);
+        assertEquals(0, dispatcher.getOpenCount());
+        assertEquals(0, dispatcher.getWaitingCount());
+    }
+
+    @Test
+    void directModeTakesAndReturnsUnitsThroughTheInventory() {
+        FakeDatabase database = new FakeDatabase();
+        AmbulanceInventory inventory = new AmbulanceInventory(new RepositoryAmbulances(database.jdbcUtils()));
+        IncrementalDispatcher dispatcher = new IncrementalDispatcher(engine, repositoryDispatch, inventory);
+        Ambulances x = station(10, "X", 4);
+        inventory.onSaved(x);
+        dispatcher.onStationChanged(x);
+
+        dispatcher.onEmergency(emergency(1, 3));
+        assertEquals(1, inventory.getAvailable(10));
+
+        dispatcher.onDemandChanged(1, 1);
+        assertEquals(3, inventory.getAvailable(10));
+        assertEquals(List.of(
+                "UPDATE ambulances SET quantity = quantity - ? WHERE id = ? AND quantity >= ? [3, 10, 3]",
+                "UPDATE ambulances SET quantity = quantity + ? WHERE id = ? [2, 10]"),
+                database.statementsStartingWith("UPDATE ambulances"));
+    }
+
+    private static List<String> describe(List<Dispatch> dispatches) {
+        return dispatches.stream().map(d -> d.getSourceCity() + ":" + d.getQuantity()).toList();
+    }
+
+    private int sentUnits() {
+        return saved.stream().mapToInt(Dispatch::getQuantity).sum();
+    }
+
+    private static Emergency emergency(int id, int quantity) {
+        Emergency emergency = new Emergency("A", "K", 45.0, 25.0, quantity);
+        emergency.setId(id);
+        return emergency;
+    }
+
+    private static Ambulances station(int id, String city, int quantity) {
+        Ambulances station = new Ambulances("K", city, 45.0 + id / 100.0, 25.0, quantity);
+        station.setId(id);
+        return station;
+    }
+}
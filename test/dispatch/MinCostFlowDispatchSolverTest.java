@@ -0,0 +1,117 @@
+package dispatch;
+
+import domain.Ambulances;
+import domain.Emergency;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinCostFlowDispatchSolverTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private final DispatchSolver greedy = new GreedyDispatchSolver();
+    private final DispatchSolver optimal = new MinCostFlowDispatchSolver(10_000);
+
+    @Test
+    void singleEmergencyMatchesGreedy() {
+        DispatchProblem problem = new DispatchProblem(
+                List.of(emergency(1, 45.0, 25.0, 4)),
+                List.of(station(10, 45.1, 25.0, 2), station(11, 45.3, 25.0, 5), station(12, 44.95, 25.0, 1)));
+
+        DispatchPlan greedyPlan = greedy.solve(problem);
+        DispatchPlan optimalPlan = optimal.solve(problem);
+
+        assertEquals(greedyPlan.getDispatchedUnits(), optimalPlan.getDispatchedUnits());
+        assertEquals(greedyPlan.getTotalDistanceKm(), optimalPlan.getTotalDistanceKm(), EPSILON);
+        assertFeasible(optimalPlan);
+    }
+
+    @Test
+    void randomProblemsDispatchAsManyUnitsAsGreedyAndNeverTravelFarther() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            DispatchProblem problem = randomProblem(random, 1 + random.nextInt(8), 1 + random.nextInt(8));
+
+            DispatchPlan greedyPlan = greedy.solve(problem);
+            DispatchPlan optimalPlan = optimal.solve(problem);
+
+            int expected = Math.min(problem.totalSupply(), problem.totalDemand());
+            assertEquals(expected, greedyPlan.getDispatchedUnits(), "greedy units in round " + round);
+            assertEquals(expected, optimalPlan.getDispatchedUnits(), "optimal units in round " + round);
+            assertTrue(optimalPlan.getTotalDistanceKm() <= greedyPlan.getTotalDistanceKm() + EPSILON,
+                    "optimal travelled farther than greedy in round " + round);
+            assertFalse(optimalPlan.isFallback());
+            assertFeasible(greedyPlan);
+            assertFeasible(optimalPlan);
+        }
+    }
+
+    @Test
+    void crossedAssignmentIsUncrossed() {
+        // Greedy gives the first emergency the station between the two, leaving the second the far one.
+        DispatchProblem problem = new DispatchProblem(
+                List.of(emergency(1, 45.0, 25.0, 1), emergency(2, 46.5, 25.0, 1)),
+                List.of(station(10, 46.0, 25.0, 1), station(11, 44.0, 25.0, 1)));
+
+        DispatchPlan greedyPlan = greedy.solve(problem);
+        DispatchPlan optimalPlan = optimal.solve(problem);
+
+        assertTrue(optimalPlan.getTotalDistanceKm() < greedyPlan.getTotalDistanceKm() - 1);
+        for (int i = 0; i < optimalPlan.size(); i++) {
+            int emergency = optimalPlan.getEmergencyIndex(i);
+            int station = optimalPlan.getStationIndex(i);
+            assertEquals(emergency == 0 ? 1 : 0, station);
+        }
+    }
+
+    @Test
+    void exhaustedBudgetFallsBackToTheGreedyPlan() {
+        DispatchProblem problem = randomProblem(new Random(7), 6, 6);
+
+        DispatchPlan plan = new MinCostFlowDispatchSolver(0).solve(problem);
+
+        assertTrue(plan.isFallback());
+        assertEquals(greedy.solve(problem).getTotalDistanceKm(), plan.getTotalDistanceKm(), EPSILON);
+    }
+
+    private static void assertFeasible(DispatchPlan plan) {
+        DispatchProblem problem = plan.getProblem();
+        for (int s = 0; s < problem.stationCount(); s++) {
+            assertTrue(plan.getResidualSupply(s) >= 0, "station " + s + " oversupplied");
+        }
+        for (int e = 0; e < problem.emergencyCount(); e++) {
+            assertTrue(plan.getUnmetDemand(e) >= 0, "emergency " + e + " overserved");
+        }
+    }
+
+    private static DispatchProblem randomProblem(Random random, int emergencies, int stations) {
+        List<Emergency> emergencyList = new ArrayList<>();
+        for (int e = 0; e < emergencies; e++) {
+            emergencyList.add(emergency(e + 1, 45 + random.nextDouble(), 25 + random.nextDouble(), 1 + random.nextInt(5)));
+        }
+        List<Ambulances> stationList = new ArrayList<>();
+        for (int s = 0; s < stations; s++) {
+            stationList.add(station(100 + s, 45 + random.nextDouble(), 25 + random.nextDouble(), random.nextInt(5)));
+        }
+        return new DispatchProblem(emergencyList, stationList);
+    }
+
+    private static Emergency emergency(int id, double latitude, double longitude, int quantity) {
+        Emergency emergency = new Emergency("A", "K", latitude, longitude, quantity);
+        emergency.setId(id);
+        return emergency;
+    }
+
+    private static Ambulances station(int id, double latitude, double longitude, int quantity) {
+        Ambulances station = new Ambulances("K", "X", latitude, longitude, quantity);
+        station.setId(id);
+        return station;
+    }
+}
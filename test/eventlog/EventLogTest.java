@@ -0,0 +1,152 @@
+package eventlog;
+
+import domain.Dispatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+    // Two InventoryChanged records (25 bytes each) per segment.
+    private static final int SMALL_SEGMENT = 64;
+
+    private Path directory;
+    private final List<EventLog> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-log-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        opened.forEach(EventLog::close);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void eventsAreReplayedAfterReopening() throws IOException {
+        Dispatch dispatch = new Dispatch("X", "K", "A", "K", 2);
+        dispatch.setTimestamp(new Timestamp(1_700_000_000_000L));
+        EventLog log = open(1 << 16);
+        assertEquals(3, log.appendAll(List.of(
+                new DispatchEvent.Dispatched(dispatch),
+                new DispatchEvent.InventoryChanged(10, -2),
+                new DispatchEvent.Resolved(7))));
+        log.close();
+
+        EventLog reopened = open(1 << 16);
+        List<DispatchEvent> events = reopened.reader(1).poll(10);
+
+        assertEquals(3, reopened.getLastSequence());
+        assertEquals(3, events.size());
+        Dispatch replayed = ((DispatchEvent.Dispatched) events.get(0)).dispatch();
+        assertEquals("X", replayed.getSourceCity());
+        assertEquals("A", replayed.getTargetCity());
+        assertEquals(2, replayed.getQuantity());
+        assertEquals(dispatch.getTimestamp(), replayed.getTimestamp());
+        assertEquals(new DispatchEvent.InventoryChanged(10, -2), events.get(1));
+        assertEquals(new DispatchEvent.Resolved(7), events.get(2));
+        assertEquals(4, reopened.append(new DispatchEvent.Resolved(8)));
+    }
+
+    @Test
+    void readerStartsAtTheRequestedSequenceAcrossSegments() throws IOException {
+        EventLog log = open(SMALL_SEGMENT);
+        log.appendAll(changes(1, 7));
+
+        EventLog.Reader reader = log.reader(4);
+        List<DispatchEvent> first = reader.poll(2);
+        List<DispatchEvent> rest = reader.poll(10);
+
+        assertEquals(changes(4, 5), first);
+        assertEquals(changes(6, 7), rest);
+        assertEquals(8, reader.getNextSequence());
+        assertEquals(List.of(), reader.poll(10));
+    }
+
+    @Test
+    void deleteBeforeRemovesOnlyFullyAppliedSealedSegments() throws IOException {
+        EventLog log = open(SMALL_SEGMENT);
+        log.appendAll(changes(1, 5));
+        assertEquals(3, segmentFiles());
+
+        log.deleteBefore(4);
+        assertEquals(2, segmentFiles());
+
+        log.deleteBefore(6);
+        assertEquals(1, segmentFiles());
+        assertEquals(changes(5, 5), log.reader(5).poll(10));
+    }
+
+    @Test
+    void tornRecordIsDiscardedOnRecovery() throws IOException {
+        EventLog log = open(1 << 16);
+        log.appendAll(changes(1, 2));
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int second = 8 + file.readInt();
+            file.seek(second + 8 + 9);
+            int value = file.readInt();
+            file.seek(second + 8 + 9);
+            file.writeInt(value + 1);
+        }
+
+        EventLog recovered = open(1 << 16);
+        assertEquals(1, recovered.getLastSequence());
+        assertEquals(changes(1, 1), recovered.reader(1).poll(10));
+        assertEquals(2, recovered.append(new DispatchEvent.InventoryChanged(99, 1)));
+    }
+
+    @Test
+    void skipToMovesPastSequencesAlreadyApplied() throws IOException {
+        EventLog log = open(1 << 16);
+        log.appendAll(changes(1, 2));
+
+        log.skipTo(10);
+        log.skipTo(5);
+
+        assertEquals(10, log.append(new DispatchEvent.Resolved(1)));
+    }
+
+    private EventLog open(int segmentBytes) throws IOException {
+        EventLog log = new EventLog(directory, segmentBytes, FsyncPolicy.OS, 0);
+        opened.add(log);
+        return log;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    // One InventoryChanged per sequence in [from, to], with the sequence as the station id.
+    private static List<DispatchEvent> changes(int from, int to) {
+        List<DispatchEvent> events = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            events.add(new DispatchEvent.InventoryChanged(i, -1));
+        }
+        return events;
+    }
+}
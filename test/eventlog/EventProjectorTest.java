@@ -0,0 +1,140 @@
+package eventlog;
+
+import domain.Ambulances;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.AmbulancesListener;
+import repository.FakeDatabase;
+import repository.JdbcUtils;
+import repository.RepositoryAmbulances;
+import repository.RepositoryDispatch;
+import repository.RepositoryEmergency;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventProjectorTest {
+
+    private static final String DECREMENT = "UPDATE ambulances SET quantity = quantity - ?";
+    private static final String CHECKPOINT = "INSERT INTO checkpoints";
+
+    private final FakeDatabase database = new FakeDatabase();
+    private final JdbcUtils jdbcUtils = database.jdbcUtils();
+    private final RepositoryAmbulances repositoryAmbulances = new RepositoryAmbulances(jdbcUtils);
+    private final List<String> notified = new CopyOnWriteArrayList<>();
+    private Path directory;
+    private EventLog log;
+    private EventProjector projector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-projector-test");
+        log = new EventLog(directory, 1 << 20, FsyncPolicy.OS, 0);
+        repositoryAmbulances.addListener(new AmbulancesListener() {
+            @Override
+            public void onSaved(Ambulances ambulance) {}
+
+            @Override
+            public void onDeleted(int id) {}
+
+            @Override
+            public void onQuantityChanged(int id, int delta) {
+                notified.add(id + ":" + delta);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (projector != null) {
+            projector.close();
+        }
+        log.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void rolledBackBatchNotifiesListenersOnlyForTheRetryThatCommits() {
+        AtomicInteger checkpointSaves = new AtomicInteger();
+        database.failWhen(statement -> statement.startsWith(CHECKPOINT) && checkpointSaves.incrementAndGet() == 1);
+        log.appendAll(List.of(
+                new DispatchEvent.InventoryChanged(3, -1),
+                new DispatchEvent.InventoryChanged(4, 2),
+                new DispatchEvent.Resolved(7)));
+
+        projector = start();
+        awaitCheckpoint(3);
+
+        assertEquals(List.of("3:-1", "4:2"), notified.stream().sorted().toList());
+        assertEquals(2, database.statementsStartingWith(DECREMENT).size());
+        assertEquals(1, projector.getFailures());
+        assertEquals(3, projector.getApplied());
+        assertEquals(0, projector.getDeadLettered());
+    }
+
+    @Test
+    void eventThatKeepsFailingIsSkippedAndTheRestApplied() {
+        database.failWhen(statement -> statement.startsWith(DECREMENT) && statement.endsWith("[1, 4, 1]"));
+        log.appendAll(List.of(
+                new DispatchEvent.InventoryChanged(3, -1),
+                new DispatchEvent.InventoryChanged(4, -1),
+                new DispatchEvent.InventoryChanged(5, -1)));
+
+        projector = start();
+        awaitCheckpoint(3);
+
+        assertEquals(List.of("3:-1", "5:-1"), notified.stream().sorted().toList());
+        assertEquals(1, projector.getDeadLettered());
+        assertEquals(2, projector.getApplied());
+        // The whole batch fails MAX_ATTEMPTS times, then the lone event MAX_ATTEMPTS more.
+        assertEquals(2L * EventProjector.MAX_ATTEMPTS, projector.getFailures());
+        assertEquals(0, log.getLastSequence() - projector.getCheckpoint());
+    }
+
+    @Test
+    void restartResumesAfterTheStoredCheckpoint() {
+        database.returnRows(Map.of("SELECT sequence FROM checkpoints", List.of(Map.of("sequence", 2L))));
+        log.appendAll(List.of(
+                new DispatchEvent.InventoryChanged(3, -1),
+                new DispatchEvent.InventoryChanged(4, -1),
+                new DispatchEvent.InventoryChanged(5, -1)));
+
+        projector = start();
+        awaitCheckpoint(3);
+
+        assertEquals(List.of("5:-1"), notified);
+        assertEquals(1, projector.getApplied());
+    }
+
+    private EventProjector start() {
+        return new EventProjector(log, jdbcUtils, new RepositoryDispatch(jdbcUtils), repositoryAmbulances,
+                new RepositoryEmergency(jdbcUtils), 100, 1);
+    }
+
+    private void awaitCheckpoint(long sequence) {
+        await(() -> projector.getCheckpoint() >= sequence);
+        assertEquals(sequence, projector.getCheckpoint());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+}
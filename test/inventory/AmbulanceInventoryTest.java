@@ -0,0 +1,78 @@
+package inventory;
+
+import domain.Ambulances;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.FakeDatabase;
+import repository.RepositoryAmbulances;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AmbulanceInventoryTest {
+
+    private static final String DECREMENT = "UPDATE ambulances SET quantity = quantity - ?";
+    private static final String INCREMENT = "UPDATE ambulances SET quantity = quantity + ?";
+
+    private final FakeDatabase database = new FakeDatabase();
+    private final RepositoryAmbulances repository = new RepositoryAmbulances(database.jdbcUtils());
+    private AmbulanceInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new AmbulanceInventory(repository);
+        Ambulances station = new Ambulances("K", "A", 45.0, 25.0, 5);
+        station.setId(1);
+        inventory.onSaved(station);
+    }
+
+    @Test
+    void changesMadeElsewhereReachTheCount() {
+        repository.incrementQuantity(1, 2);
+        repository.decrementQuantity(1, 3);
+
+        assertEquals(4, inventory.getAvailable(1));
+    }
+
+    @Test
+    void ownReserveAndReleaseAreNotAppliedTwice() {
+        assertTrue(inventory.reserve(1, 2));
+        assertTrue(inventory.release(1, 1));
+
+        assertEquals(4, inventory.getAvailable(1));
+        assertEquals(1, inventory.getReservations());
+    }
+
+    @Test
+    void reserveRollsBackWhenTheRowNoLongerHasTheUnits() {
+        database.matchNothingWhen(statement -> statement.startsWith(DECREMENT));
+
+        assertFalse(inventory.reserve(1, 2));
+        assertEquals(5, inventory.getAvailable(1));
+        assertEquals(1, inventory.getRollbacks());
+    }
+
+    @Test
+    void restockAppliesTheDifferenceConditionally() {
+        assertTrue(inventory.restock(1, 2));
+        assertTrue(inventory.restock(1, 6));
+        assertTrue(inventory.restock(1, 6));
+
+        assertEquals(6, inventory.getAvailable(1));
+        assertEquals(List.of(DECREMENT + " WHERE id = ? AND quantity >= ? [3, 1, 3]"),
+                database.statementsStartingWith(DECREMENT));
+        assertEquals(List.of(INCREMENT + " WHERE id = ? [4, 1]"), database.statementsStartingWith(INCREMENT));
+    }
+
+    @Test
+    void restockFailsForUnknownStationOrWhenTheCountNeverSettles() {
+        assertFalse(inventory.restock(2, 3));
+
+        database.matchNothingWhen(statement -> statement.startsWith(DECREMENT));
+        assertFalse(inventory.restock(1, 1));
+        assertEquals(5, inventory.getAvailable(1));
+    }
+}
@@ -0,0 +1,318 @@
+package repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * In-memory stand-in for a JDBC database that records what it is asked to do. Every executed
+ * statement is logged as its SQL followed by its parameters, and transaction control as COMMIT,
+ * ROLLBACK, SAVEPOINT, ROLLBACK TO SAVEPOINT and RELEASE SAVEPOINT. Updates affect one row and
+ * queries return no rows unless a test says otherwise.
+ */
+public final class FakeDatabase {
+
+    private static final String PREFIX = "jdbc:fake:";
+    private static final Map<String, FakeDatabase> databases = new ConcurrentHashMap<>();
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    static {
+        try {
+            DriverManager.registerDriver(new FakeDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String url = PREFIX + instances.incrementAndGet();
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger keys = new AtomicInteger();
+    private volatile Predicate<String> failing = statement -> false;
+    private volatile Predicate<String> unmatched = statement -> false;
+    private volatile Map<String, List<Map<String, Object>>> results = Map.of();
+
+    public FakeDatabase() {
+        databases.put(url, this);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public JdbcUtils jdbcUtils() {
+        Properties props = new Properties();
+        props.setProperty("jdbc.url", url);
+        props.setProperty("jdbc.pool.minSize", "0");
+        return new JdbcUtils(props);
+    }
+
+    public ConnectionPool pool(int maxSize) {
+        return new ConnectionPool(url, null, null, 0, maxSize, 1000, 60_000, 1, 0);
+    }
+
+    // Logged statements (SQL and parameters) matching the predicate throw SQLException; COMMIT included.
+    public void failWhen(Predicate<String> failing) {
+        this.failing = failing;
+    }
+
+    // Updates matching the predicate report zero rows affected.
+    public void matchNothingWhen(Predicate<String> unmatched) {
+        this.unmatched = unmatched;
+    }
+
+    // Queries whose SQL starts with a key return its rows, each a map of column name to value.
+    public void returnRows(Map<String, List<Map<String, Object>>> results) {
+        this.results = Map.copyOf(results);
+    }
+
+    public List<String> getLog() {
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    public List<String> statementsStartingWith(String prefix) {
+        return getLog().stream().filter(s -> s.startsWith(prefix)).toList();
+    }
+
+    private void run(String statement) throws SQLException {
+        log.add(statement);
+        if (failing.test(statement)) {
+            throw new SQLException("Injected failure: " + statement);
+        }
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private Connection connect() {
+        AtomicInteger savepoints = new AtomicInteger();
+        boolean[] closed = {false};
+        return (Connection) proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "createStatement" -> proxy(Statement.class, (p, m, a) -> switch (m.getName()) {
+                case "execute" -> {
+                    run((String) a[0]);
+                    yield false;
+                }
+                case "executeUpdate" -> {
+                    run((String) a[0]);
+                    yield 1;
+                }
+                default -> defaultValue(m.getReturnType());
+            });
+            case "prepareStatement" -> new FakeStatement((String) args[0]).proxy;
+            case "commit" -> {
+                run("COMMIT");
+                yield null;
+            }
+            case "rollback" -> {
+                run(args == null ? "ROLLBACK" : "ROLLBACK TO SAVEPOINT " + ((Savepoint) args[0]).getSavepointId());
+                yield null;
+            }
+            case "setSavepoint" -> {
+                int id = savepoints.incrementAndGet();
+                run("SAVEPOINT " + id);
+                yield proxy(Savepoint.class, (p, m, a) -> m.getName().equals("getSavepointId") ? id : null);
+            }
+            case "releaseSavepoint" -> {
+                run("RELEASE SAVEPOINT " + ((Savepoint) args[0]).getSavepointId());
+                yield null;
+            }
+            case "close" -> {
+                closed[0] = true;
+                yield null;
+            }
+            case "isClosed" -> closed[0];
+            case "isValid", "getAutoCommit" -> true;
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "FakeConnection[" + url + "]";
+            default -> defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private final class FakeStatement implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement proxy;
+        private final Map<Integer, Object> parameters = new ConcurrentHashMap<>();
+        private final List<String> batch = new ArrayList<>();
+        private int lastRows;
+
+        private FakeStatement(String sql) {
+            this.sql = sql;
+            this.proxy = (PreparedStatement) FakeDatabase.proxy(PreparedStatement.class, this);
+        }
+
+        private String bound() {
+            List<Object> values = new ArrayList<>();
+            for (int i = 1; i <= parameters.size(); i++) {
+                values.add(parameters.get(i));
+            }
+            return sql + " " + values;
+        }
+
+        @Override
+        public Object invoke(Object p, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, args[1] == null ? "null" : args[1]);
+                return null;
+            }
+            switch (name) {
+                case "clearParameters":
+                    parameters.clear();
+                    return null;
+                case "addBatch":
+                    batch.add(bound());
+                    parameters.clear();
+                    return null;
+                case "clearBatch":
+                    batch.clear();
+                    return null;
+                case "executeBatch": {
+                    int[] counts = new int[batch.size()];
+                    for (int i = 0; i < counts.length; i++) {
+                        run(batch.get(i));
+                        counts[i] = unmatched.test(batch.get(i)) ? 0 : 1;
+                    }
+                    lastRows = counts.length;
+                    batch.clear();
+                    return counts;
+                }
+                case "executeUpdate": {
+                    String statement = bound();
+                    run(statement);
+                    lastRows = 1;
+                    return unmatched.test(statement) ? 0 : 1;
+                }
+                case "execute":
+                    run(bound());
+                    lastRows = 1;
+                    return false;
+                case "executeQuery": {
+                    run(bound());
+                    return rows(results.entrySet().stream()
+                            .filter(e -> sql.startsWith(e.getKey()))
+                            .map(Map.Entry::getValue)
+                            .findFirst()
+                            .orElse(List.of()));
+                }
+                case "getGeneratedKeys": {
+                    List<Map<String, Object>> generated = new ArrayList<>();
+                    for (int i = 0; i < lastRows; i++) {
+                        generated.add(Map.of("1", keys.incrementAndGet()));
+                    }
+                    return rows(generated);
+                }
+                case "getConnection":
+                    return null;
+                case "isClosed":
+                    return false;
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+    }
+
+    private static ResultSet rows(List<Map<String, Object>> rows) {
+        int[] position = {-1};
+        return (ResultSet) proxy(ResultSet.class, (p, m, a) -> {
+            String name = m.getName();
+            if (name.equals("next")) {
+                return ++position[0] < rows.size();
+            }
+            if (name.startsWith("get") && a != null && a.length == 1 && position[0] >= 0 && position[0] < rows.size()) {
+                Map<String, Object> row = rows.get(position[0]);
+                Object value = row.get(String.valueOf(a[0]));
+                if (value == null) {
+                    return defaultValue(m.getReturnType());
+                }
+                if (m.getReturnType() == int.class) {
+                    return ((Number) value).intValue();
+                }
+                if (m.getReturnType() == long.class) {
+                    return ((Number) value).longValue();
+                }
+                if (m.getReturnType() == double.class) {
+                    return ((Number) value).doubleValue();
+                }
+                return value;
+            }
+            return defaultValue(m.getReturnType());
+        });
+    }
+
+    private static final class FakeDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            FakeDatabase database = databases.get(url);
+            return database == null ? null : database.connect();
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
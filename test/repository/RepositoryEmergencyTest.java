@@ -0,0 +1,39 @@
+package repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositoryEmergencyTest {
+
+    private static final String UPDATE_QUANTITY = "UPDATE emergencies SET quantity = ? WHERE id = ?";
+
+    private final FakeDatabase database = new FakeDatabase();
+    private final RepositoryEmergency repository = new RepositoryEmergency(database.jdbcUtils());
+
+    @Test
+    void updateQuantityWritesOnlyTheQuantity() {
+        assertTrue(repository.updateQuantity(7, 4));
+
+        assertEquals(List.of(UPDATE_QUANTITY + " [4, 7]"), database.statementsStartingWith("UPDATE emergencies"));
+    }
+
+    @Test
+    void updateQuantityReportsAnUnknownEmergency() {
+        database.matchNothingWhen(statement -> statement.startsWith(UPDATE_QUANTITY));
+
+        assertFalse(repository.updateQuantity(7, 4));
+    }
+
+    @Test
+    void updateQuantityFailureIsRethrown() {
+        database.failWhen(statement -> statement.startsWith(UPDATE_QUANTITY));
+
+        assertThrows(RuntimeException.class, () -> repository.updateQuantity(7, 4));
+    }
+}
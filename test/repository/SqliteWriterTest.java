@@ -0,0 +1,100 @@
+package repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqliteWriterTest {
+
+    private final FakeDatabase database = new FakeDatabase();
+
+    @Test
+    void loneWriterCommitsWhenItCloses() throws Exception {
+        SqliteWriter writer = new SqliteWriter(database.pool(1), 8);
+        try (Connection conn = writer.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT 1");
+        }
+
+        assertEquals(List.of("SAVEPOINT sp_write", "INSERT 1", "RELEASE sp_write", "COMMIT"), database.getLog());
+        assertEquals(1, writer.getTransactions());
+        writer.close();
+    }
+
+    @Test
+    void queuedWritersShareOneCommit() throws Exception {
+        SqliteWriter writer = new SqliteWriter(database.pool(1), 8);
+        Connection first = writer.getConnection();
+        AtomicReference<Throwable> secondFailure = new AtomicReference<>();
+        Thread second = new Thread(() -> {
+            try (Connection conn = writer.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT 2");
+            } catch (Throwable e) {
+                secondFailure.set(e);
+            }
+        });
+        second.start();
+        awaitBlocked(second);
+
+        // The first writer sees the second queued, so it leaves the commit to it.
+        first.createStatement().execute("INSERT 1");
+        first.close();
+        second.join(10_000);
+
+        assertNull(secondFailure.get());
+        assertEquals(1, database.statementsStartingWith("COMMIT").size());
+        assertEquals(1, writer.getTransactions());
+        assertEquals(2, writer.getWrites());
+        writer.close();
+    }
+
+    @Test
+    void closeCommitsAndReleasesAWaitingGroup() throws Exception {
+        SqliteWriter writer = new SqliteWriter(database.pool(1), 8);
+        Connection member = writer.getConnection();
+        Thread closer = new Thread(writer::close);
+        closer.start();
+        awaitBlocked(closer);
+
+        member.createStatement().execute("INSERT 1");
+        member.close();
+        closer.join(10_000);
+
+        assertEquals(List.of("SAVEPOINT sp_write", "INSERT 1", "RELEASE sp_write", "COMMIT"), database.getLog());
+        assertEquals(1, writer.getTransactions());
+    }
+
+    @Test
+    void failedCommitOnCloseIsReportedToTheWaitingGroup() throws Exception {
+        SqliteWriter writer = new SqliteWriter(database.pool(1), 8);
+        database.failWhen(statement -> statement.equals("COMMIT"));
+        Connection member = writer.getConnection();
+        Thread closer = new Thread(writer::close);
+        closer.start();
+        awaitBlocked(closer);
+
+        member.createStatement().execute("INSERT 1");
+        SQLException failure = assertThrows(SQLException.class, member::close);
+        closer.join(10_000);
+
+        assertTrue(failure.getMessage().startsWith("Group commit failed"));
+        assertEquals(1, writer.getFailedCommits());
+    }
+
+    // Waits until the thread is parked, i.e. queued for the writer's turn.
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "thread never blocked");
+            Thread.sleep(1);
+        }
+    }
+}